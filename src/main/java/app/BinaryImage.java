@@ -0,0 +1,355 @@
+package app;
+
+import javafx.scene.image.Image;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+
+import static org.opencv.core.CvType.CV_8UC1;
+
+/**
+ * Obraz binarny przechowujący 64 piksele w jednej liczbie typu long (bit ustawiony -
+ * piksel obiektu). Każdy wiersz zajmuje osobne słowa, bit k słowa w odpowiada
+ * kolumnie 64 * w + k, a bity za ostatnią kolumną są zawsze zerami.
+ * <p>
+ * Operacje na sąsiedztwie wykonywane są na całych słowach: sąsiad z lewej (prawej)
+ * strony wszystkich 64 pikseli słowa to słowo przesunięte o jeden bit, uzupełnione
+ * bitem z sąsiedniego słowa. Obraz zajmuje 1/8 pamięci obrazu CV_8UC1 i 1/32 pamięci
+ * obrazu CV_8UC4.
+ */
+public class BinaryImage {
+
+    private final int rows;
+    private final int cols;
+
+    /**
+     * Liczba słów w wierszu.
+     */
+    private final int wordsPerRow;
+
+    /**
+     * Słowa obrazu, wierszami.
+     */
+    private final long[] words;
+
+    /**
+     * Tworzy pusty obraz (same piksele tła).
+     *
+     * @param rows liczba wierszy
+     * @param cols liczba kolumn
+     */
+    public BinaryImage(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.wordsPerRow = (cols + 63) >>> 6;
+        this.words = new long[rows * wordsPerRow];
+    }
+
+    /**
+     * Tworzy obraz binarny z obiektu Mat (CV_8U, 1, 3 lub 4 kanały). Piksel należy
+     * do obiektu, jeśli wszystkie jego kanały barwy mają poziom jasności obiektu;
+     * kanał alfa jest pomijany.
+     *
+     * @param image      obraz
+     * @param object     poziom jasności obiektu
+     * @param background poziom jasności tła
+     * @return obraz binarny lub <tt>null</tt>, jeśli któryś z pikseli nie należy ani do obiektu, ani do tła
+     */
+    public static BinaryImage fromMat(Mat image, double object, double background) {
+        if (image.depth() != CvType.CV_8U) {
+            return null;
+        }
+        int channels = image.channels();
+        int colours = Math.min(channels, 3);
+        BinaryImage binary = new BinaryImage(image.rows(), image.cols());
+        byte objectValue = (byte) object;
+        byte backgroundValue = (byte) background;
+
+        byte[] buffer = MatPool.acquireBuffer((int) image.total() * channels);
+        try {
+            image.get(0, 0, buffer);
+            for (int row = 0, i = 0; row < binary.rows; row++) {
+                for (int index = 0; index < binary.wordsPerRow; index++) {
+                    int bits = Math.min(64, binary.cols - (index << 6));
+                    long word = 0;
+                    for (int bit = 0; bit < bits; bit++, i += channels) {
+                        byte value = buffer[i];
+                        if (value != objectValue && value != backgroundValue) {
+                            return null;
+                        }
+                        for (int c = 1; c < colours; c++) {
+                            if (buffer[i + c] != value) {
+                                return null;
+                            }
+                        }
+                        if (value == objectValue) {
+                            word |= 1L << bit;
+                        }
+                    }
+                    binary.words[row * binary.wordsPerRow + index] = word;
+                }
+            }
+        } finally {
+            MatPool.releaseBuffer(buffer);
+        }
+        return binary;
+    }
+
+    /**
+     * Zapisuje obraz do obiektu Mat. Obiekt o 3 lub 4 kanałach dostaje wartość we
+     * wszystkich kanałach barwy (i nieprzezroczysty kanał alfa), każdy inny staje się
+     * obrazem CV_8UC1.
+     *
+     * @param image      obraz wyjściowy
+     * @param object     poziom jasności obiektu
+     * @param background poziom jasności tła
+     */
+    public void toMat(Mat image, double object, double background) {
+        int channels = image.empty() ? 1 : image.channels();
+        byte[] buffer = MatPool.acquireBuffer(rows * cols);
+        try {
+            byte objectValue = (byte) object;
+            byte backgroundValue = (byte) background;
+            for (int row = 0, i = 0; row < rows; row++) {
+                for (int index = 0; index < wordsPerRow; index++) {
+                    long word = words[row * wordsPerRow + index];
+                    int bits = Math.min(64, cols - (index << 6));
+                    for (int bit = 0; bit < bits; bit++, i++) {
+                        buffer[i] = (word & (1L << bit)) != 0 ? objectValue : backgroundValue;
+                    }
+                }
+            }
+
+            if (channels == 3 || channels == 4) {
+                Mat gray = MatPool.acquire(rows, cols, CV_8UC1);
+                gray.put(0, 0, buffer);
+                Imgproc.cvtColor(gray, image, channels == 3 ? Imgproc.COLOR_GRAY2BGR : Imgproc.COLOR_GRAY2BGRA);
+                MatPool.release(gray);
+            } else {
+                image.create(rows, cols, CV_8UC1);
+                image.put(0, 0, buffer);
+            }
+        } finally {
+            MatPool.releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * Konwertuje obraz do obiektu Image.
+     *
+     * @param object     poziom jasności obiektu
+     * @param background poziom jasności tła
+     * @return obiekt <tt>Image</tt> z obrazem
+     */
+    public Image toImage(double object, double background) {
+        try (MatScope scope = MatScope.open("BinaryImage.toImage")) {
+            Mat mat = scope.acquire(rows, cols, CV_8UC1);
+            toMat(mat, object, background);
+            return ImageUtils.mat2Image(mat);
+        }
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    /**
+     * @return liczba słów w wierszu
+     */
+    public int wordsPerRow() {
+        return wordsPerRow;
+    }
+
+    public boolean get(int row, int col) {
+        return (words[row * wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    public void set(int row, int col, boolean value) {
+        int index = row * wordsPerRow + (col >>> 6);
+        if (value) {
+            words[index] |= 1L << col;
+        } else {
+            words[index] &= ~(1L << col);
+        }
+    }
+
+    /**
+     * @param row   wiersz
+     * @param index numer słowa w wierszu
+     * @return słowo obrazu
+     */
+    public long word(int row, int index) {
+        return words[row * wordsPerRow + index];
+    }
+
+    /**
+     * Zmienia słowo obrazu. Bity za ostatnią kolumną są zerowane.
+     *
+     * @param row   wiersz
+     * @param index numer słowa w wierszu
+     * @param value nowa wartość słowa
+     */
+    public void setWord(int row, int index, long value) {
+        words[row * wordsPerRow + index] = index == wordsPerRow - 1 ? value & lastWordMask() : value;
+    }
+
+    /**
+     * Słowo wiersza przesunięte w poziomie: bit k wyniku to piksel w kolumnie
+     * 64 * index + k + dx. Piksele spoza obrazu mają wartość <tt>fill</tt>.
+     *
+     * @param row   wiersz
+     * @param index numer słowa w wierszu
+     * @param dx    przesunięcie (ujemne - sąsiedzi z lewej strony)
+     * @param fill  wartość pikseli spoza obrazu
+     * @return przesunięte słowo
+     */
+    public long shiftedWord(int row, int index, int dx, boolean fill) {
+        int start = (index << 6) + dx;
+        int first = Math.floorDiv(start, 64);
+        int shift = Math.floorMod(start, 64);
+        long low = wordOrFill(row, first, fill);
+        if (shift == 0) {
+            return low;
+        }
+        return (low >>> shift) | (wordOrFill(row, first + 1, fill) << (64 - shift));
+    }
+
+    private long wordOrFill(int row, int index, boolean fill) {
+        long fillWord = fill ? -1L : 0L;
+        if (row < 0 || row >= rows || index < 0 || index >= wordsPerRow) {
+            return fillWord;
+        }
+        long word = words[row * wordsPerRow + index];
+        if (index == wordsPerRow - 1) {
+            long valid = lastWordMask();
+            word = (word & valid) | (fillWord & ~valid);
+        }
+        return word;
+    }
+
+    /**
+     * Maska bitów ostatniego słowa wiersza, które odpowiadają kolumnom obrazu.
+     */
+    private long lastWordMask() {
+        int used = cols & 63;
+        return used == 0 ? -1L : (1L << used) - 1;
+    }
+
+    /**
+     * @return liczba pikseli obiektu
+     */
+    public long count() {
+        long count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public BinaryImage copy() {
+        BinaryImage copy = new BinaryImage(rows, cols);
+        System.arraycopy(words, 0, copy.words, 0, words.length);
+        return copy;
+    }
+
+    /**
+     * Erozja elementem strukturalnym <tt>Imgproc.MORPH_RECT</tt> lub <tt>Imgproc.MORPH_CROSS</tt>
+     * o podanej wielkości (z punktem zaczepienia w środku). Pod uwagę brane są tylko
+     * piksele obrazu - tak samo działa <tt>Imgproc.erode</tt> z uzupełnianiem brzegu
+     * <tt>BORDER_REPLICATE</tt> lub <tt>BORDER_REFLECT_101</tt>.
+     *
+     * @param shape kształt elementu strukturalnego
+     * @param size  wielkość elementu strukturalnego (nieparzysta)
+     * @return obraz po erozji
+     */
+    public BinaryImage erode(int shape, int size) {
+        return morphology(shape, size, true);
+    }
+
+    /**
+     * Dylacja elementem strukturalnym <tt>Imgproc.MORPH_RECT</tt> lub <tt>Imgproc.MORPH_CROSS</tt>
+     * (zob. {@link #erode}).
+     *
+     * @param shape kształt elementu strukturalnego
+     * @param size  wielkość elementu strukturalnego (nieparzysta)
+     * @return obraz po dylacji
+     */
+    public BinaryImage dilate(int shape, int size) {
+        return morphology(shape, size, false);
+    }
+
+    /**
+     * Erozja to iloczyn, a dylacja suma logiczna pikseli pod elementem strukturalnym.
+     * Element prostokątny jest złożeniem odcinka poziomego i pionowego, a krzyż ich sumą,
+     * więc wystarczą przesunięcia całych słów w poziomie i całych wierszy w pionie.
+     */
+    private BinaryImage morphology(int shape, int size, boolean erode) {
+        if (shape != Imgproc.MORPH_RECT && shape != Imgproc.MORPH_CROSS) {
+            throw new IllegalArgumentException("Unsupported structuring element: " + shape);
+        }
+        int radius = size / 2;
+        BinaryImage horizontal = horizontal(radius, erode);
+        if (shape == Imgproc.MORPH_RECT) {
+            return horizontal.vertical(radius, erode);
+        }
+
+        BinaryImage vertical = vertical(radius, erode);
+        for (int i = 0; i < words.length; i++) {
+            vertical.words[i] = erode ? vertical.words[i] & horizontal.words[i] : vertical.words[i] | horizontal.words[i];
+        }
+        return vertical;
+    }
+
+    private BinaryImage horizontal(int radius, boolean erode) {
+        BinaryImage result = new BinaryImage(rows, cols);
+        for (int row = 0; row < rows; row++) {
+            for (int index = 0; index < wordsPerRow; index++) {
+                long value = word(row, index);
+                for (int dx = -radius; dx <= radius; dx++) {
+                    if (dx != 0) {
+                        long shifted = shiftedWord(row, index, dx, erode);
+                        value = erode ? value & shifted : value | shifted;
+                    }
+                }
+                result.setWord(row, index, value);
+            }
+        }
+        return result;
+    }
+
+    private BinaryImage vertical(int radius, boolean erode) {
+        BinaryImage result = new BinaryImage(rows, cols);
+        for (int row = 0; row < rows; row++) {
+            int from = Math.max(0, row - radius);
+            int to = Math.min(rows - 1, row + radius);
+            for (int index = 0; index < wordsPerRow; index++) {
+                long value = word(row, index);
+                for (int y = from; y <= to; y++) {
+                    value = erode ? value & word(y, index) : value | word(y, index);
+                }
+                result.words[row * wordsPerRow + index] = value;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BinaryImage)) {
+            return false;
+        }
+        BinaryImage other = (BinaryImage) o;
+        return rows == other.rows && cols == other.cols && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * rows + cols) + Arrays.hashCode(words);
+    }
+}
@@ -10,4 +10,24 @@ class Canals {
         this.green = green;
         this.blue = blue;
     }
+
+    static int pack(int red, int green, int blue) {
+        return 0xff000000 | ((red & 0xff) << 16) | ((green & 0xff) << 8) | (blue & 0xff);
+    }
+
+    static Canals unpack(int argb) {
+        return new Canals(red(argb), green(argb), blue(argb));
+    }
+
+    static int red(int argb) {
+        return (argb >> 16) & 0xff;
+    }
+
+    static int green(int argb) {
+        return (argb >> 8) & 0xff;
+    }
+
+    static int blue(int argb) {
+        return argb & 0xff;
+    }
 }
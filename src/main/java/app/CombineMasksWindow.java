@@ -92,11 +92,12 @@ public class CombineMasksWindow {
     /**
      * Wynik połączenia wybranych masek.
      */
-    private Mask5x5 combinedMask;
+    private MaskNxN combinedMask;
 
     /**
-     * Flaga, która wskazuje, czy wyświetlać podgląd operacji na dwóch maskach 3x3
-     * (jeśli true), czy na masce wynikowej 5x5 (false).
+     * Flaga, która wskazuje, czy wyświetlać podgląd operacji na maskach składowych 3x3
+     * (jeśli true), czy na masce wynikowej 5x5 (false). Oba podglądy różnią się tylko
+     * pasem brzegowym obrazu - zob. {@link #applyMasks(Mat, MatScope)}.
      */
     private boolean twoMasksPreview;
 
@@ -413,8 +414,11 @@ public class CombineMasksWindow {
      * @param valuesB wartości maski B
      */
     private void changeCurrentMask(double[] valuesA, double[] valuesB) {
+        currentMaskA.release();
+        currentMaskB.release();
         currentMaskA = new Mask3x3("CUSTOM_A", false, valuesA);
         currentMaskB = new Mask3x3("CUSTOM_B", false, valuesB);
+        combinedMask.release();
         combinedMask = MaskUtils.combineMasks(currentMaskA, currentMaskB);
         combinedMaskLabel.setText("Wynik:\n" + combinedMask.toString());
 
@@ -455,7 +459,7 @@ public class CombineMasksWindow {
 
     /**
      * Zamienia obraz na obiekt Mat i przeprowadza wybraną przez użytkownika operację
-     * (filtrację maską wynikową 5x5 lub dwiema maskami 3x3 po kolei), po czym zwraca
+     * (filtrację maską wynikową 5x5 lub maskami składowymi 3x3), po czym zwraca
      * obiekt Image z wynikowym obrazem.
      *
      * @return wynikowy obraz
@@ -464,59 +468,72 @@ public class CombineMasksWindow {
         if (currentMaskA == null || currentMaskB == null) {
             return before;
         }
-        Mat image = ImageUtils.imageToMat(before);
-
-        if (twoMasksPreview) {
-            applyMasks(image);
-        } else {
-            applyCombinedMask(image);
-        }
+        try (MatScope scope = MatScope.open("CombineMasksWindow")) {
+            Mat image = scope.adopt(ImageUtils.imageToMat(before));
+            Mat result;
 
+            if (twoMasksPreview) {
+                result = applyMasks(image, scope);
+            } else {
+                result = applyCombinedMask(image, scope);
+            }
 
-        return ImageUtils.mat2Image(image);
+            return ImageUtils.mat2Image(result);
+        }
     }
 
     /**
-     * Przeprowadza dwie fitracje: najpierw maską A, następnie maską B.
+     * Przeprowadza filtrację maską A, a następnie maską B. Wnętrze obrazu liczone jest
+     * jednym przebiegiem maski złożonej z obu masek (tak samo jak w podglądzie maski
+     * wynikowej). Jedynie pas brzegowy szerokości 2 pikseli na każde powtórzenie
+     * liczony jest filtracjami po kolei, z uzupełnianiem brzegu przed każdą z nich,
+     * i tylko w tym pasie wynik może różnić się od filtracji maską wynikową.
      * Jeśli suma wartości którejś z masek wynosi 0, obraz przed operacjami
      * jest zamieniany na szaroodcieniowy.
      * Na koniec przeprowadzane jest skalowanie wybraną przez użytkownika metodą.
      *
      * @param image obiekt Mat z obrazem
+     * @param scope zakres, w którym rejestrowane są obiekty pośrednie i wynik
+     * @return obiekt Mat z wynikiem
      */
-    private void applyMasks(Mat image) {
+    private Mat applyMasks(Mat image, MatScope scope) {
+        Mat input = image;
         if (currentMaskA.getKernelSize() == 0 ||
                 currentMaskB.getKernelSize() == 0 ||
                 currentScalingMethod != METHOD_3) {
-            Imgproc.cvtColor(image, image, Imgproc.COLOR_RGB2GRAY);
+            input = scope.adopt(ImageUtils.rgbToGray(image));
         }
 
-        for (int i = 0; i < times; i++) {
-            FilteringUtils.applyMasks(image, currentMaskA, currentMaskB, currentBorderType, border);
-        }
+        Mat result = scope.adopt(FilteringUtils.acquireResult(input));
+        FilteringUtils.applyMasks(input, result, currentMaskA, currentMaskB, times, currentBorderType, border);
 
-        MatScalingUtils.scale(image, currentScalingMethod);
+        MatScalingUtils.scale(result, currentScalingMethod);
+        return result;
     }
 
 
     /**
-     * Przeprowadza fitrację maską wynikową powstałą z połączenia dwóch masek.
+     * Przeprowadza fitrację maską wynikową powstałą z połączenia dwóch masek
+     * (brzeg obrazu uzupełniany jest raz, dla maski 5x5).
      * Jeśli suma wartości którejś maski wynikowej wynosi 0, obraz przed operacjami
      * jest zamieniany na szaroodcieniowy.
      * Na koniec przeprowadzane jest skalowanie wybraną przez użytkownika metodą.
      *
      * @param image obiekt Mat z obrazem
+     * @param scope zakres, w którym rejestrowane są obiekty pośrednie i wynik
+     * @return obiekt Mat z wynikiem
      */
-    private void applyCombinedMask(Mat image) {
+    private Mat applyCombinedMask(Mat image, MatScope scope) {
+        Mat input = image;
         if (combinedMask.getKernelSize() == 0 || currentScalingMethod != METHOD_3) {
-            Imgproc.cvtColor(image, image, Imgproc.COLOR_RGB2GRAY);
+            input = scope.adopt(ImageUtils.rgbToGray(image));
         }
 
-        for (int i = 0; i < times; i++) {
-            FilteringUtils.applyMask(image, combinedMask, currentBorderType, border);
-        }
+        Mat result = scope.adopt(FilteringUtils.acquireResult(input));
+        FilteringUtils.applyMask(input, result, combinedMask, times, currentBorderType, border);
 
-        MatScalingUtils.scale(image, currentScalingMethod);
+        MatScalingUtils.scale(result, currentScalingMethod);
+        return result;
     }
 
     private BarChart<String, Number> buildHistogram(Image image) {
@@ -15,6 +15,7 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import org.opencv.core.Core;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
@@ -269,6 +270,7 @@ public class CreateMaskWindow {
      * @param values wartości maski do utworzenia
      */
     private void changeCurrentMask(double[] values) {
+        currentMask.release();
         currentMask = new Mask3x3("CUSTOM", false, values);
         reloadPreview();
     }
@@ -316,31 +318,33 @@ public class CreateMaskWindow {
         if (mask == null) {
             return before;
         }
-        Mat image = ImageUtils.imageToMat(before);
+        try (MatScope scope = MatScope.open("CreateMaskWindow")) {
+            Mat image = scope.adopt(ImageUtils.imageToMat(before));
+            Mat result;
 
-        if (mask.getKernelSize() == 1) {
-            applyMask(mask, image);
-        } else {
-            applyMaskWithColorConversion(mask, image);
-        }
-
-        return ImageUtils.mat2Image(image);
-    }
+            if (mask.getKernelSize() == 1) {
+                result = applyMask(mask, image, scope);
+            } else {
+                result = applyMaskWithColorConversion(mask, image, scope);
+            }
 
-    private void applyMask(Mask3x3 mask, Mat image) {
-        for (int i = 0; i < times; i++) {
-            FilteringUtils.applyMask(image, mask, currentBorderType, border);
+            return ImageUtils.mat2Image(result);
         }
     }
 
-    private void applyMaskWithColorConversion(Mask3x3 mask, Mat image) {
-        Imgproc.cvtColor(image, image, Imgproc.COLOR_RGB2GRAY);
+    private Mat applyMask(Mask3x3 mask, Mat image, MatScope scope) {
+        Mat result = scope.adopt(FilteringUtils.acquireResult(image));
+        FilteringUtils.applyMask(image, result, mask, times, currentBorderType, border);
+        return result;
+    }
 
-        for (int i = 0; i < times; i++) {
-            FilteringUtils.applyMask(image, mask, currentBorderType, border);
-        }
+    private Mat applyMaskWithColorConversion(Mask3x3 mask, Mat image, MatScope scope) {
+        Mat gray = scope.adopt(ImageUtils.rgbToGray(image));
+        Mat filtered = applyMask(mask, gray, scope);
 
-        Core.convertScaleAbs(image, image);
+        Mat result = scope.acquire(filtered.rows(), filtered.cols(), CvType.CV_8UC(filtered.channels()));
+        Core.convertScaleAbs(filtered, result);
+        return result;
     }
 
     private BarChart<String, Number> buildHistogram(Image image) {
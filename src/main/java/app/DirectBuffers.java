@@ -0,0 +1,55 @@
+package app;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Frees direct and mapped buffers immediately instead of waiting for the GC
+ * to notice that the owning object is unreachable.
+ */
+class DirectBuffers {
+
+    private DirectBuffers() {
+    }
+
+    static void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        try {
+            invokeCleaner(buffer);
+        } catch (ReflectiveOperationException e) {
+            try {
+                cleanLegacy(buffer);
+            } catch (ReflectiveOperationException legacyFailure) {
+                // the buffer stays reachable until the GC collects it
+            }
+        }
+    }
+
+    /**
+     * Java 9+: sun.misc.Unsafe#invokeCleaner.
+     */
+    private static void invokeCleaner(ByteBuffer buffer) throws ReflectiveOperationException {
+        Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        invokeCleaner.invoke(theUnsafe.get(null), buffer);
+    }
+
+    /**
+     * Java 8: DirectByteBuffer#cleaner().clean().
+     */
+    private static void cleanLegacy(ByteBuffer buffer) throws ReflectiveOperationException {
+        Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+        cleanerMethod.setAccessible(true);
+        Object cleaner = cleanerMethod.invoke(buffer);
+        if (cleaner != null) {
+            Method clean = cleaner.getClass().getMethod("clean");
+            clean.setAccessible(true);
+            clean.invoke(cleaner);
+        }
+    }
+}
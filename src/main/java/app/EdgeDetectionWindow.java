@@ -367,16 +367,19 @@ public class EdgeDetectionWindow {
      * @return obraz wynikowy.
      */
     private Image applyMask(Mask3x3 mask) {
-        Mat image = ImageUtils.imageToMat(before);
+        try (MatScope scope = MatScope.open("EdgeDetectionWindow")) {
+            Mat image = scope.adopt(ImageUtils.imageToMat(before));
+            Mat result;
+
+            if (mask.getKernelSize() == 1 && currentScalingMethod == METHOD_3) {
+                result = applyMask(mask, image, scope);
+            } else {
+                result = applyMaskWithColorConversion(mask, image, scope);
+            }
 
-        if (mask.getKernelSize() == 1 && currentScalingMethod == METHOD_3) {
-            applyMask(mask, image);
-        } else {
-            applyMaskWithColorConversion(mask, image);
+            MatScalingUtils.scale(result, currentScalingMethod);
+            return ImageUtils.mat2Image(result);
         }
-
-        MatScalingUtils.scale(image, currentScalingMethod);
-        return ImageUtils.mat2Image(image);
     }
 
     /**
@@ -384,11 +387,13 @@ public class EdgeDetectionWindow {
      *
      * @param mask  maska do operacji
      * @param image obiekt Mat z obrazem
+     * @param scope zakres, w którym rejestrowany jest wynik
+     * @return obiekt Mat z wynikiem
      */
-    private void applyMask(Mask3x3 mask, Mat image) {
-        for (int i = 0; i < times; i++) {
-            FilteringUtils.applyMaskWithBlur(image, mask, currentBorderType, border);
-        }
+    private Mat applyMask(Mask3x3 mask, Mat image, MatScope scope) {
+        Mat result = scope.adopt(FilteringUtils.acquireResult(image));
+        FilteringUtils.applyMaskWithBlur(image, result, mask, times, currentBorderType, border);
+        return result;
     }
 
     /**
@@ -397,13 +402,12 @@ public class EdgeDetectionWindow {
      *
      * @param mask  maska do operacji
      * @param image obiekt Mat z obrazem
+     * @param scope zakres, w którym rejestrowane są obiekty pośrednie i wynik
+     * @return obiekt Mat z wynikiem
      */
-    private void applyMaskWithColorConversion(Mask3x3 mask, Mat image) {
-        Imgproc.cvtColor(image, image, Imgproc.COLOR_RGB2GRAY);
-
-        for (int i = 0; i < times; i++) {
-            FilteringUtils.applyMaskWithBlur(image, mask, currentBorderType, border);
-        }
+    private Mat applyMaskWithColorConversion(Mask3x3 mask, Mat image, MatScope scope) {
+        Mat gray = scope.adopt(ImageUtils.rgbToGray(image));
+        return applyMask(mask, gray, scope);
     }
 
     private BarChart<String, Number> buildHistogram(Image image) {
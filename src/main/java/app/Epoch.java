@@ -14,16 +14,16 @@ public class Epoch {
         return regions;
     }
 
+    /**
+     * Black canvas the size of the segmented image; empty when the epoch has no regions.
+     */
     public ImageMap map() {
-        ImageMap output = new ImageMap();
-
-        for (Region region : regions) {
-            for (int x = region.xStart(); x <= region.xEnd(); x++) {
-                for (int y = region.yStart(); y <= region.yEnd(); y++) {
-                    output.put(x, y, new Canals(0, 0, 0)); // TODO
-                }
-            }
+        if (regions.isEmpty()) {
+            return ImageMap.allocate(0, 0);
         }
+        ImageMap source = regions.get(0).map();
+        ImageMap output = ImageMap.allocate(source.width(), source.height());
+        output.fill(Canals.pack(0, 0, 0));
 
         return output;
     }
@@ -1,11 +1,15 @@
 package app;
 
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.Point;
+import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
+import java.util.function.BiConsumer;
+
 import static org.opencv.core.Core.BORDER_ISOLATED;
 import static org.opencv.core.Core.copyMakeBorder;
 import static org.opencv.core.CvType.CV_32F;
@@ -24,9 +28,26 @@ public class FilteringUtils {
      * @param border     wartość pikseli brzegowych (jeżeli stała)
      */
     public static void applyMaskWithBlur(Mat image, Mask3x3 mask, int borderType, Scalar border) {
-        Imgproc.GaussianBlur(image, image, new Size(3, 3), 0);
+        applyMaskWithBlur(image, image, mask, borderType, border);
+    }
+
+    /**
+     * Przeprowadza filtrację podaną maską ze wstępny rozmyciem gaussowskim,
+     * zapisując wynik w osobnym obiekcie.
+     *
+     * @param src        obraz wejściowy (nie jest modyfikowany)
+     * @param dst        obraz wyjściowy
+     * @param mask       maska filtrowania
+     * @param borderType metoda operacji na pikselach brzegowych
+     * @param border     wartość pikseli brzegowych (jeżeli stała)
+     */
+    public static void applyMaskWithBlur(Mat src, Mat dst, Mask3x3 mask, int borderType, Scalar border) {
+        try (MatScope scope = MatScope.open("FilteringUtils.applyMaskWithBlur")) {
+            Mat blurred = scope.acquire(src.rows(), src.cols(), src.type());
+            Imgproc.GaussianBlur(src, blurred, new Size(3, 3), 0);
 
-        applyMask(image, mask, borderType, border);
+            applyMask(blurred, dst, mask, borderType, border);
+        }
     }
 
     /**
@@ -38,8 +59,21 @@ public class FilteringUtils {
      * @param border     wartość pikseli brzegowych (jeżeli stała)
      */
     public static void applyMask(Mat image, IMask mask, int borderType, Scalar border) {
-        Imgproc.filter2D(image, image, CV_32F, mask.getMat(), new Point(-1, -1), 0, borderType);
-        handleBorder(image, border);
+        applyMask(image, image, mask, borderType, border);
+    }
+
+    /**
+     * Przeprowadza filtrację podaną maską, zapisując wynik (CV_32F) w osobnym obiekcie.
+     *
+     * @param src        obraz wejściowy (nie jest modyfikowany)
+     * @param dst        obraz wyjściowy
+     * @param mask       maska filtrowania (3x3 lub 5x5)
+     * @param borderType metoda operacji na pikselach brzegowych
+     * @param border     wartość pikseli brzegowych (jeżeli stała)
+     */
+    public static void applyMask(Mat src, Mat dst, IMask mask, int borderType, Scalar border) {
+        filter(src, dst, mask, borderType);
+        handleBorder(dst, border);
     }
 
     /**
@@ -51,10 +85,285 @@ public class FilteringUtils {
      * @param borderType metoda operacji na pikselach brzegowych
      * @param border     wartość pikseli brzegowych (jeżeli stała)
      */
-    public static void applyMasks(Mat image, Mask3x3 mask1, Mask3x3 mask2, int borderType, Scalar border) {
-        Imgproc.filter2D(image, image, CV_32F, mask1.getMat(), new Point(-1, -1), 0, borderType);
-        Imgproc.filter2D(image, image, CV_32F, mask2.getMat(), new Point(-1, -1), 0, borderType);
-        handleBorder(image, border);
+    public static void applyMasks(Mat image, IMask mask1, IMask mask2, int borderType, Scalar border) {
+        applyMasks(image, image, mask1, mask2, borderType, border);
+    }
+
+    /**
+     * Przeprowadza dwie filtrację - najpierw maską 1, później maską 2, zapisując
+     * wynik (CV_32F) w osobnym obiekcie.
+     *
+     * @param src        obraz wejściowy (nie jest modyfikowany)
+     * @param dst        obraz wyjściowy
+     * @param mask1      maska filtrowania 1
+     * @param mask2      maska filtrowania 2
+     * @param borderType metoda operacji na pikselach brzegowych
+     * @param border     wartość pikseli brzegowych (jeżeli stała)
+     */
+    public static void applyMasks(Mat src, Mat dst, IMask mask1, IMask mask2, int borderType, Scalar border) {
+        applyMasks(src, dst, new IMask[]{mask1, mask2}, 1, borderType, border);
+    }
+
+    /**
+     * Przeprowadza kolejne filtracje podanymi maskami (w podanej kolejności),
+     * zapisując wynik (CV_32F) w osobnym obiekcie.
+     *
+     * @param src        obraz wejściowy (nie jest modyfikowany)
+     * @param dst        obraz wyjściowy
+     * @param masks      maski filtrowania
+     * @param borderType metoda operacji na pikselach brzegowych
+     * @param border     wartość pikseli brzegowych (jeżeli stała)
+     */
+    public static void applyMasks(Mat src, Mat dst, IMask[] masks, int borderType, Scalar border) {
+        applyMasks(src, dst, masks, 1, borderType, border);
+    }
+
+    /**
+     * Przeprowadza kolejne filtracje podanymi maskami zadaną liczbę razy. Filtracja
+     * jest liniowa, więc cały ciąg filtracji daje ten sam wynik co jedno przejście
+     * maską złożoną ({@link MaskUtils#compose}) - z wyjątkiem pasa przy krawędzi
+     * obrazu, gdzie każda filtracja osobno uzupełnia piksele brzegowe. Obraz
+     * filtrowany jest więc raz maską złożoną, a pas przy krawędzi liczony jest
+     * ponownie kolejnymi filtracjami (zob. {@link #restoreBorderBand}). Obraz
+     * wejściowy potrzebny jest do końca, więc filtracja w miejscu (src == dst)
+     * odbywa się na jego kopii.
+     *
+     * @param src        obraz wejściowy (nie jest modyfikowany)
+     * @param dst        obraz wyjściowy
+     * @param masks      maski filtrowania
+     * @param times      liczba powtórzeń ciągu filtracji
+     * @param borderType metoda operacji na pikselach brzegowych
+     * @param border     wartość pikseli brzegowych (jeżeli stała)
+     */
+    public static void applyMasks(Mat src, Mat dst, IMask[] masks, double times, int borderType, Scalar border) {
+        if (src == dst) {
+            try (MatScope scope = MatScope.open("FilteringUtils.applyMasks")) {
+                Mat copy = scope.acquire(src.rows(), src.cols(), src.type());
+                src.copyTo(copy);
+                applyMasks(copy, dst, masks, times, borderType, border);
+            }
+            return;
+        }
+
+        int passes = passes(times);
+        if (passes == 0) {
+            src.copyTo(dst);
+            return;
+        }
+
+        IMask[] chain = new IMask[masks.length * passes];
+        int reach = 0;
+        for (int i = 0; i < chain.length; i++) {
+            chain[i] = masks[i % masks.length];
+            reach += chain[i].getSize() / 2;
+        }
+        MaskNxN composed = MaskUtils.compose(chain);
+        try {
+            applyMask(src, dst, composed, borderType, border);
+        } finally {
+            composed.release();
+        }
+        restoreBorderBand(src, dst, reach,
+                (input, output) -> repeat(input, output, passes, (in, out) -> filterChain(in, out, masks, borderType, border)));
+    }
+
+    /**
+     * Przeprowadza filtrację podaną maską zadaną liczbę razy. Filtracja jest liniowa,
+     * więc n przejść maską daje ten sam wynik co jedno przejście maską podniesioną
+     * do potęgi n ({@link MaskUtils#power}) - z wyjątkiem pasa przy krawędzi obrazu,
+     * gdzie każde przejście osobno uzupełnia piksele brzegowe. Obraz filtrowany jest
+     * więc raz maską wynikową (zob. {@link #filter}), a pas przy krawędzi liczony
+     * jest ponownie n przejściami (zob. {@link #restoreBorderBand}).
+     *
+     * @param src        obraz wejściowy (nie jest modyfikowany)
+     * @param dst        obraz wyjściowy
+     * @param mask       maska filtrowania
+     * @param times      liczba powtórzeń filtracji
+     * @param borderType metoda operacji na pikselach brzegowych
+     * @param border     wartość pikseli brzegowych (jeżeli stała)
+     */
+    public static void applyMask(Mat src, Mat dst, IMask mask, double times, int borderType, Scalar border) {
+        int passes = passes(times);
+        if (passes < 2) {
+            repeat(src, dst, passes, (input, output) -> applyMask(input, output, mask, borderType, border));
+            return;
+        }
+
+        applyMasks(src, dst, new IMask[]{mask}, passes, borderType, border);
+    }
+
+    /**
+     * Przeprowadza filtrację podaną maską ze wstępnym rozmyciem gaussowskim zadaną liczbę razy.
+     *
+     * @param src        obraz wejściowy (nie jest modyfikowany)
+     * @param dst        obraz wyjściowy
+     * @param mask       maska filtrowania
+     * @param times      liczba powtórzeń filtracji
+     * @param borderType metoda operacji na pikselach brzegowych
+     * @param border     wartość pikseli brzegowych (jeżeli stała)
+     */
+    public static void applyMaskWithBlur(Mat src, Mat dst, Mask3x3 mask, double times, int borderType, Scalar border) {
+        repeat(src, dst, times, (input, output) -> applyMaskWithBlur(input, output, mask, borderType, border));
+    }
+
+    /**
+     * Przeprowadza dwie filtracje (maską 1, potem maską 2) zadaną liczbę razy.
+     *
+     * @param src        obraz wejściowy (nie jest modyfikowany)
+     * @param dst        obraz wyjściowy
+     * @param mask1      maska filtrowania 1
+     * @param mask2      maska filtrowania 2
+     * @param times      liczba powtórzeń filtracji
+     * @param borderType metoda operacji na pikselach brzegowych
+     * @param border     wartość pikseli brzegowych (jeżeli stała)
+     */
+    public static void applyMasks(Mat src, Mat dst, IMask mask1, IMask mask2, double times, int borderType, Scalar border) {
+        applyMasks(src, dst, new IMask[]{mask1, mask2}, times, borderType, border);
+    }
+
+    /**
+     * Pojedyncza filtracja maską (bez obsługi stałej wartości pikseli brzegowych).
+     * Maski separowalne stosowane są jako dwie filtracje jednowymiarowe - wierszy
+     * i kolumn - pozostałe przez <tt>Imgproc.filter2D</tt>, który dla masek od około
+     * 9x9 sam liczy splot przez DFT.
+     *
+     * @param src        obraz wejściowy
+     * @param dst        obraz wyjściowy (CV_32F)
+     * @param mask       maska filtrowania
+     * @param borderType metoda operacji na pikselach brzegowych
+     */
+    private static void filter(Mat src, Mat dst, IMask mask, int borderType) {
+        SeparableKernel separable = mask.getSeparableKernel();
+        if (separable != null) {
+            Imgproc.sepFilter2D(src, dst, CV_32F, separable.getKernelX(), separable.getKernelY(), new Point(-1, -1), 0, borderType);
+        } else {
+            Imgproc.filter2D(src, dst, CV_32F, mask.getMat(), new Point(-1, -1), 0, borderType);
+        }
+    }
+
+    /**
+     * Kolejne filtracje podanymi maskami, każda z własnym uzupełnianiem pikseli
+     * brzegowych. Wyniki pośrednie (CV_32F) przełączane są między obrazem wyjściowym
+     * a obiektem pomocniczym z {@link MatPool}, tak aby ostatnia filtracja zapisała
+     * wynik w obrazie wyjściowym.
+     *
+     * @param src        obraz wejściowy
+     * @param dst        obraz wyjściowy (CV_32F)
+     * @param masks      maski filtrowania
+     * @param borderType metoda operacji na pikselach brzegowych
+     * @param border     wartość pikseli brzegowych (jeżeli stała)
+     */
+    private static void filterChain(Mat src, Mat dst, IMask[] masks, int borderType, Scalar border) {
+        try (MatScope scope = MatScope.open("FilteringUtils.filterChain")) {
+            Mat spare = masks.length > 1 ? scope.acquire(src.rows(), src.cols(), CvType.CV_32FC(src.channels())) : null;
+            Mat input = src;
+            for (int i = 0; i < masks.length; i++) {
+                Mat output = (masks.length - 1 - i) % 2 == 0 ? dst : spare;
+                filter(input, output, masks[i], borderType);
+                input = output;
+            }
+        }
+        handleBorder(dst, border);
+    }
+
+    /**
+     * Powtarza przejście filtracji zadaną liczbę razy. Żadne przejście nie zapisuje
+     * do obiektu, z którego czyta: wyniki przełączane są między obrazem wyjściowym
+     * a obiektem pomocniczym z {@link MatPool} (tego samego typu), tak aby ostatnie
+     * przejście zapisało wynik w obrazie wyjściowym. Przy zerowej liczbie powtórzeń
+     * wynikiem jest niezmieniony obraz wejściowy.
+     *
+     * @param src   obraz wejściowy (nie jest modyfikowany)
+     * @param dst   obraz wyjściowy (CV_32F)
+     * @param times liczba powtórzeń
+     * @param pass  pojedyncze przejście (wejście, wyjście)
+     */
+    private static void repeat(Mat src, Mat dst, double times, BiConsumer<Mat, Mat> pass) {
+        int passes = passes(times);
+        if (passes == 0) {
+            if (src != dst) {
+                src.copyTo(dst);
+            }
+            return;
+        }
+
+        try (MatScope scope = MatScope.open("FilteringUtils.repeat")) {
+            Mat spare = passes > 1 ? scope.acquire(src.rows(), src.cols(), CvType.CV_32FC(src.channels())) : null;
+            Mat input = src;
+            for (int i = 0; i < passes; i++) {
+                Mat output = (passes - 1 - i) % 2 == 0 ? dst : spare;
+                pass.accept(input, output);
+                input = output;
+            }
+        }
+    }
+
+    /**
+     * Liczba przejść filtracji dla podanej liczby powtórzeń.
+     */
+    private static int passes(double times) {
+        return times > 0 ? (int) Math.ceil(times) : 0;
+    }
+
+    /**
+     * Przelicza pas pikseli przy krawędziach obrazu wyjściowego podaną operacją.
+     * Operacja wykonywana jest na paskach obrazu wejściowego (górnym, dolnym, lewym
+     * i prawym) o szerokości 2 * reach + 2, z których kopiowane jest tylko reach
+     * pikseli od krawędzi obrazu. Piksele przy wewnętrznej krawędzi paska, zaburzone
+     * uzupełnianiem brzegu paska, są odrzucane.
+     *
+     * @param src       obraz wejściowy
+     * @param dst       obraz wyjściowy (CV_32F)
+     * @param reach     szerokość przeliczanego pasa
+     * @param operation operacja (wejście, wyjście)
+     */
+    private static void restoreBorderBand(Mat src, Mat dst, int reach, BiConsumer<Mat, Mat> operation) {
+        int rows = src.rows();
+        int cols = src.cols();
+        int strip = 2 * reach + 2;
+        if (rows <= 2 * strip || cols <= 2 * strip) {
+            operation.accept(src, dst);
+            return;
+        }
+
+        try (MatScope scope = MatScope.open("FilteringUtils.restoreBorderBand")) {
+            recomputeStrip(src, dst, new Rect(0, 0, cols, strip), new Rect(0, 0, cols, reach), operation, scope);
+            recomputeStrip(src, dst, new Rect(0, rows - strip, cols, strip), new Rect(0, strip - reach, cols, reach), operation, scope);
+            recomputeStrip(src, dst, new Rect(0, 0, strip, rows), new Rect(0, 0, reach, rows), operation, scope);
+            recomputeStrip(src, dst, new Rect(cols - strip, 0, strip, rows), new Rect(strip - reach, 0, reach, rows), operation, scope);
+        }
+    }
+
+    /**
+     * Przeprowadza operację na kopii fragmentu obrazu wejściowego i kopiuje część
+     * wyniku w to samo miejsce obrazu wyjściowego.
+     *
+     * @param src       obraz wejściowy
+     * @param dst       obraz wyjściowy
+     * @param stripRect fragment obrazu, na którym wykonywana jest operacja
+     * @param keepRect  część wyniku (we współrzędnych fragmentu) kopiowana do obrazu wyjściowego
+     * @param operation operacja (wejście, wyjście)
+     * @param scope     zakres, w którym rejestrowane są obiekty pośrednie
+     */
+    private static void recomputeStrip(Mat src, Mat dst, Rect stripRect, Rect keepRect, BiConsumer<Mat, Mat> operation, MatScope scope) {
+        Mat input = scope.acquire(stripRect.height, stripRect.width, src.type());
+        scope.track(src.submat(stripRect)).copyTo(input);
+        Mat output = scope.acquire(stripRect.height, stripRect.width, dst.type());
+        operation.accept(input, output);
+
+        Rect target = new Rect(stripRect.x + keepRect.x, stripRect.y + keepRect.y, keepRect.width, keepRect.height);
+        scope.track(output.submat(keepRect)).copyTo(scope.track(dst.submat(target)));
+    }
+
+    /**
+     * Pobiera z {@link MatPool} obiekt odpowiedni do przechowania wyniku
+     * filtracji podanego obrazu (ten sam rozmiar i liczba kanałów, głębia CV_32F).
+     *
+     * @param image obraz wejściowy
+     * @return obiekt Mat na wynik filtracji
+     */
+    public static Mat acquireResult(Mat image) {
+        return MatPool.acquire(image.rows(), image.cols(), CvType.CV_32FC(image.channels()));
     }
 
     /**
@@ -67,6 +376,7 @@ public class FilteringUtils {
         if (border != null) {
             Mat submat = image.submat(1, image.height() - 1, 1, image.width() - 1);
             copyMakeBorder(submat, image, 1, 1, 1, 1, BORDER_ISOLATED, border);
+            submat.release();
         }
     }
 
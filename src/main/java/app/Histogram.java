@@ -1,6 +1,6 @@
 package app;
 
-import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
 import java.util.stream.IntStream;
 
 public class Histogram {
@@ -8,6 +8,11 @@ public class Histogram {
     private final int green[];
     private final int blue[];
 
+    private int[] cumulativeRed;
+    private int[] cumulativeGreen;
+    private int[] cumulativeBlue;
+    private PointOperation equalization;
+
     public Histogram(int[] red, int[] green, int[] blue) {
         this.red = red;
         this.green = green;
@@ -30,10 +35,103 @@ public class Histogram {
         return new Canals(IntStream.of(red).sum(), IntStream.of(green).sum(), IntStream.of(blue).sum());
     }
 
+    public Canals maxColorCanalValues() {
+        return new Canals(lastNotZero(red, 0), lastNotZero(green, 0), lastNotZero(blue, 0));
+    }
+
+    public Canals minColorValues() {
+        return new Canals(firstNotZero(red, 255), firstNotZero(green, 255), firstNotZero(blue, 255));
+    }
+
     public Canals sumToThreshold(Canals threshold) {
-        int r = IntStream.of(Arrays.copyOf(red, threshold.red)).sum();
-        int g = IntStream.of(Arrays.copyOf(green, threshold.green)).sum();
-        int b = IntStream.of(Arrays.copyOf(blue, threshold.blue)).sum();
+        int r = sumBelow(cumulativeRed(), threshold.red);
+        int g = sumBelow(cumulativeGreen(), threshold.green);
+        int b = sumBelow(cumulativeBlue(), threshold.blue);
         return new Canals(r, g, b);
     }
+
+    /**
+     * Prefix sums: entry i holds the number of pixels with value less than or equal to i.
+     */
+    public int[] cumulativeRed() {
+        if (cumulativeRed == null) {
+            cumulativeRed = cumulative(red);
+        }
+        return cumulativeRed;
+    }
+
+    public int[] cumulativeGreen() {
+        if (cumulativeGreen == null) {
+            cumulativeGreen = cumulative(green);
+        }
+        return cumulativeGreen;
+    }
+
+    public int[] cumulativeBlue() {
+        if (cumulativeBlue == null) {
+            cumulativeBlue = cumulative(blue);
+        }
+        return cumulativeBlue;
+    }
+
+    /**
+     * Lookup tables equalizing this histogram, computed once per histogram.
+     */
+    public PointOperation equalization() {
+        if (equalization == null) {
+            equalization = PointOperation.of(
+                    equalizationFor(red, cumulativeRed(), "red"),
+                    equalizationFor(green, cumulativeGreen(), "green"),
+                    equalizationFor(blue, cumulativeBlue(), "blue"));
+        }
+        return equalization;
+    }
+
+    private static int firstNotZero(int[] canal, int defaultValue) {
+        for (int i = 0; i < canal.length; i++) {
+            if (canal[i] != 0) {
+                return i;
+            }
+        }
+        return defaultValue;
+    }
+
+    private static int lastNotZero(int[] canal, int defaultValue) {
+        for (int i = canal.length - 1; i >= 0; i--) {
+            if (canal[i] != 0) {
+                return i;
+            }
+        }
+        return defaultValue;
+    }
+
+    private static IntUnaryOperator equalizationFor(int[] canal, int[] cumulative, String canalName) {
+        int firstNotZero = firstNotZero(canal, -1);
+        if (firstNotZero < 0) {
+            throw new RuntimeException("No non zero " + canalName + " fields in histogram");
+        }
+        float firstNotZeroDistribution = firstNotZero;
+        int sum = cumulative[cumulative.length - 1];
+        return color -> {
+            float distribution = (float) sumBelow(cumulative, color) / sum;
+            return Math.round((distribution - firstNotZeroDistribution / (1 - firstNotZeroDistribution)) * (255 - 1));
+        };
+    }
+
+    private static int[] cumulative(int[] canal) {
+        int[] output = new int[canal.length];
+        int sum = 0;
+        for (int i = 0; i < canal.length; i++) {
+            sum += canal[i];
+            output[i] = sum;
+        }
+        return output;
+    }
+
+    private static int sumBelow(int[] cumulative, int threshold) {
+        if (threshold <= 0) {
+            return 0;
+        }
+        return cumulative[Math.min(threshold, cumulative.length) - 1];
+    }
 }
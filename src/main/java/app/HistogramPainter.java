@@ -8,8 +8,6 @@ import javafx.scene.image.Image;
 
 public class HistogramPainter {
 
-    private ImageMap imageMap;
-
     private XYChart.Series seriesRed;
     private XYChart.Series seriesGreen;
     private XYChart.Series seriesBlue;
@@ -19,8 +17,6 @@ public class HistogramPainter {
     HistogramPainter(Image image) {
         success = false;
 
-        imageMap = new ImageConverter().toImageMap(image);
-
         seriesRed = new XYChart.Series();
         seriesGreen = new XYChart.Series();
         seriesBlue = new XYChart.Series();
@@ -28,7 +24,10 @@ public class HistogramPainter {
         seriesGreen.setName("zielony");
         seriesBlue.setName("niebieski");
 
-        Histogram histogram = imageMap.histogram();
+        Histogram histogram;
+        try (ImageMap imageMap = new ImageConverter().toImageMap(image)) {
+            histogram = imageMap.histogram();
+        }
 
         for (int i = 0; i < 256; i++) {
             seriesRed.getData().add(new XYChart.Data(String.valueOf(i), histogram.red()[i]));
@@ -0,0 +1,63 @@
+package app;
+
+import java.nio.IntBuffer;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes an RGB histogram of a stripe of rows. Inside a fork-join pool, stripes above
+ * {@link TiledExecutor#TILE_PIXELS} are split in halves; every leaf counts into its own
+ * arrays and the partial histograms are summed on the way back up. Invoked outside a
+ * pool (a sequential {@link TiledExecutor}) the whole stripe is counted on the caller's thread.
+ */
+class HistogramTask extends RecursiveTask<int[][]> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final IntBuffer pixels;
+    private final int width;
+    private final int rowFrom;
+    private final int rowTo;
+
+    HistogramTask(IntBuffer pixels, int width, int rowFrom, int rowTo) {
+        this.pixels = pixels;
+        this.width = width;
+        this.rowFrom = rowFrom;
+        this.rowTo = rowTo;
+    }
+
+    @Override
+    protected int[][] compute() {
+        int rows = rowTo - rowFrom;
+        if (inForkJoinPool() && TiledExecutor.shouldSplit(width, rows)) {
+            int middle = rowFrom + rows / 2;
+            HistogramTask top = new HistogramTask(pixels, width, rowFrom, middle);
+            HistogramTask bottom = new HistogramTask(pixels, width, middle, rowTo);
+            top.fork();
+            int[][] bottomCounts = bottom.compute();
+            return merge(top.join(), bottomCounts);
+        }
+        return count();
+    }
+
+    private int[][] count() {
+        int[] red = new int[256];
+        int[] green = new int[256];
+        int[] blue = new int[256];
+        for (int i = rowFrom * width, end = rowTo * width; i < end; i++) {
+            int argb = pixels.get(i);
+            red[Canals.red(argb)]++;
+            green[Canals.green(argb)]++;
+            blue[Canals.blue(argb)]++;
+        }
+        return new int[][]{red, green, blue};
+    }
+
+    private static int[][] merge(int[][] into, int[][] other) {
+        for (int canal = 0; canal < 3; canal++) {
+            for (int i = 0; i < 256; i++) {
+                into[canal][i] += other[canal][i];
+            }
+        }
+        return into;
+    }
+}
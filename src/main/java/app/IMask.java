@@ -6,5 +6,12 @@ public interface IMask {
 
     int getKernelSize();
     Mat getMat();
+    double[] getValues();
+    int getSize();
+
+    /**
+     * @return rozkład maski na filtry jednowymiarowe lub <tt>null</tt>, jeśli maska nie jest separowalna
+     */
+    SeparableKernel getSeparableKernel();
 
 }
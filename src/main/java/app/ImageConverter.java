@@ -1,26 +1,24 @@
 package app;
 
-import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
 
-import java.awt.image.BufferedImage;
+import java.nio.IntBuffer;
 
 public class ImageConverter {
 
     public ImageMap toImageMap(Image image) {
-        ImageMap imageMap = new ImageMap();
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        ImageMap imageMap = ImageMap.allocate(width, height);
 
         PixelReader pixelReader = image.getPixelReader();
-        for (int y = 0; y < image.getHeight(); y++) {
-            for (int x = 0; x < image.getWidth(); x++) {
-                int argb = pixelReader.getArgb(x, y);
-                int a = (0xff & (argb >> 24));
-                int r = (0xff & (argb >> 16));
-                int g = (0xff & (argb >> 8));
-                int b = (0xff & argb);
-                imageMap.put(x, y, new Canals(r, g, b));
-            }
+        IntBuffer pixels = imageMap.buffer();
+        pixelReader.getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, width);
+        if (pixelReader.getPixelFormat().getType() != PixelFormat.Type.BYTE_RGB) {
+            makeOpaque(imageMap.buffer());
         }
         return imageMap;
     }
@@ -33,21 +31,19 @@ public class ImageConverter {
     }
 
     public Image buildImage(int width, int height, ImageMap imageMap) {
-        int[] data = new int[width * height];
-        int i = 0;
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                Canals entry = imageMap.get(x, y);
-                int red = entry.red;
-                int green = entry.green;
-                int blue = entry.blue;
-                data[i++] = (red << 16) | (green << 8) | blue;
-            }
-        }
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        image.setRGB(0, 0, width, height, data, 0, width);
+        WritableImage image = new WritableImage(width, height);
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), imageMap.buffer(), imageMap.width());
+
+        return image;
+    }
 
-        return SwingFXUtils.toFXImage(image, null);
+    /**
+     * The alpha canal is not processed, every pixel in ImageMap is opaque.
+     */
+    private void makeOpaque(IntBuffer pixels) {
+        for (int i = 0, size = pixels.limit(); i < size; i++) {
+            pixels.put(i, 0xff000000 | pixels.get(i));
+        }
     }
 
 }
@@ -2,129 +2,288 @@ package app;
 
 import io.vavr.Function3;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
-public class ImageMap {
-    private Map<Integer, Map<Integer, Canals>> map = new HashMap<>();
+/**
+ * Pixels are kept row-major in a single IntBuffer as opaque packed ARGB values,
+ * one int per pixel, with 8 bits per colour canal. The buffer lives either on
+ * the heap, in direct memory or in a memory-mapped file; the last two are
+ * outside the Java heap and have to be released with {@link #close()}.
+ */
+public class ImageMap implements AutoCloseable {
 
-    public void put(int x, int y, Canals canals) {
-        Map<Integer, Canals> innerMap = map.get(x);
+    /**
+     * Images with more pixels than this are allocated off-heap by {@link #allocate(int, int)}.
+     */
+    static final long OFF_HEAP_THRESHOLD = Long.getLong("app.offHeapThreshold", 16L * 1024 * 1024);
+
+    private final int width;
+    private final int height;
+    private IntBuffer pixels;
+    private ByteBuffer nativeBuffer;
+    private final Path mappedFile;
+    private TiledExecutor executor;
+
+    public ImageMap(int width, int height) {
+        this(width, height, IntBuffer.wrap(new int[checkedSize(width, height)]), null, null);
+    }
+
+    private ImageMap(int width, int height, IntBuffer pixels, ByteBuffer nativeBuffer, Path mappedFile) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+        this.nativeBuffer = nativeBuffer;
+        this.mappedFile = mappedFile;
+        if (nativeBuffer != null) {
+            NativeMemoryCounter.PIXEL_BUFFERS.allocated(nativeBuffer.capacity());
+        }
+    }
+
+    public static ImageMap allocate(int width, int height) {
+        if ((long) width * height > OFF_HEAP_THRESHOLD) {
+            return offHeap(width, height);
+        }
+        return new ImageMap(width, height);
+    }
+
+    public static ImageMap offHeap(int width, int height) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(checkedSize(width, height) * 4).order(ByteOrder.nativeOrder());
+        return new ImageMap(width, height, buffer.asIntBuffer(), buffer, null);
+    }
+
+    /**
+     * Maps the pixels to a new temporary file owned by the map; {@link #close()} deletes it.
+     */
+    public static ImageMap mapped(int width, int height) throws IOException {
+        int bytes = checkedSize(width, height) * 4;
+        Path file = Files.createTempFile("imagemap", ".pixels");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes).order(ByteOrder.nativeOrder());
+            return new ImageMap(width, height, buffer.asIntBuffer(), buffer, file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
 
-        if (innerMap == null) {
-            innerMap = new HashMap<>();
+    private static int checkedSize(int width, int height) {
+        long size = (long) width * height;
+        if (size * 4 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Image " + width + "x" + height + " does not fit in a single pixel buffer");
         }
+        return (int) size;
+    }
+
+    /**
+     * View of the pixel buffer for bulk transfers, positioned at the first pixel.
+     */
+    IntBuffer buffer() {
+        return pixels.duplicate();
+    }
+
+    /**
+     * Runs the passes over this map on {@code executor} instead of {@link TiledExecutor#global()}.
+     */
+    public ImageMap withExecutor(TiledExecutor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    TiledExecutor executor() {
+        return executor != null ? executor : TiledExecutor.global();
+    }
 
-        innerMap.put(y, canals);
+    Path mappedFile() {
+        return mappedFile;
+    }
 
-        map.put(x, innerMap);
+    public boolean isOffHeap() {
+        return nativeBuffer != null;
+    }
+
+    public boolean isClosed() {
+        return pixels == null;
+    }
+
+    /**
+     * Releases the pixel buffer. Direct and mapped memory is returned to the
+     * system immediately; the map must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (pixels == null) {
+            return;
+        }
+        pixels = null;
+        if (nativeBuffer != null) {
+            NativeMemoryCounter.PIXEL_BUFFERS.released(nativeBuffer.capacity());
+            DirectBuffers.release(nativeBuffer);
+            nativeBuffer = null;
+        }
+        if (mappedFile != null) {
+            try {
+                Files.deleteIfExists(mappedFile);
+            } catch (IOException e) {
+                mappedFile.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    public void put(int x, int y, Canals canals) {
+        pixels.put(y * width + x, Canals.pack(canals.red, canals.green, canals.blue));
     }
 
     public Canals get(int x, int y) {
-        return map.get(x).get(y);
+        return Canals.unpack(pixels.get(y * width + x));
+    }
+
+    public void putArgb(int x, int y, int argb) {
+        pixels.put(y * width + x, argb);
+    }
+
+    public int getArgb(int x, int y) {
+        return pixels.get(y * width + x);
     }
 
     public int getGray(int x, int y) {
-        return map.get(x).get(y).red;
+        return Canals.red(pixels.get(y * width + x));
+    }
+
+    public void fill(int argb) {
+        for (int i = 0, size = pixels.capacity(); i < size; i++) {
+            pixels.put(i, argb);
+        }
     }
 
     public Canals maxColorCanalValues() {
-        Canals currentBiggest = new Canals(0, 0, 0);
-        for (Map.Entry<Integer, Map<Integer, Canals>> e : map.entrySet()) {
-            Integer x = e.getKey();
-            Map<Integer, Canals> value = e.getValue();
-            for (Map.Entry<Integer, Canals> entry : value.entrySet()) {
-                Integer y = entry.getKey();
-                Canals canals = entry.getValue();
-                currentBiggest = new Canals(
-                        Math.max(canals.red, currentBiggest.red),
-                        Math.max(canals.green, currentBiggest.green),
-                        Math.max(canals.blue, currentBiggest.blue));
-            }
+        int red = 0;
+        int green = 0;
+        int blue = 0;
+        for (int i = 0, size = pixels.capacity(); i < size; i++) {
+            int argb = pixels.get(i);
+            red = Math.max(Canals.red(argb), red);
+            green = Math.max(Canals.green(argb), green);
+            blue = Math.max(Canals.blue(argb), blue);
         }
-        return currentBiggest;
+        return new Canals(red, green, blue);
     }
 
     public Canals minColorValues() {
-        Canals currentLowest = new Canals(255, 255, 255);
-        for (Map.Entry<Integer, Map<Integer, Canals>> e : map.entrySet()) {
-            Integer x = e.getKey();
-            Map<Integer, Canals> value = e.getValue();
-            for (Map.Entry<Integer, Canals> entry : value.entrySet()) {
-                Integer y = entry.getKey();
-                Canals canals = entry.getValue();
-                currentLowest = new Canals(
-                        Math.min(canals.red, currentLowest.red),
-                        Math.min(canals.green, currentLowest.green),
-                        Math.min(canals.blue, currentLowest.blue));
-            }
+        int red = 255;
+        int green = 255;
+        int blue = 255;
+        for (int i = 0, size = pixels.capacity(); i < size; i++) {
+            int argb = pixels.get(i);
+            red = Math.min(Canals.red(argb), red);
+            green = Math.min(Canals.green(argb), green);
+            blue = Math.min(Canals.blue(argb), blue);
         }
-        return currentLowest;
+        return new Canals(red, green, blue);
     }
 
     public int height() {
-        return map.get(0).size();
+        return height;
     }
 
     public int width() {
-        return map.size();
+        return width;
     }
 
+    /**
+     * Operators passed to the pixel passes below may be called concurrently from
+     * several threads, one band of rows each, and must not share mutable state.
+     */
     public void singlePointOperation(Function3<Integer, Integer, Canals, Canals> operator) {
-        map.forEach((x, value) -> {
-            value.forEach((y, canals) -> {
-                put(x, y, operator.apply(x, y, canals));
-            });
+        pointOperation((x, y, argb) -> {
+            Canals canals = operator.apply(x, y, Canals.unpack(argb));
+            return Canals.pack(canals.red, canals.green, canals.blue);
         });
     }
 
-    public void neighbourhoodOperation(Function3<Integer, Integer, Neighbourhood3x3, Canals> operator) {
-        map.forEach((x, value) -> {
-            value.forEach((y, canals) -> {
-                Neighbourhood3x3 neighbourhood = new Neighbourhood3x3(
-                        getCanalValueOrNull(x - 1, y - 1),
-                        getCanalValueOrNull(x, y - 1),
-                        getCanalValueOrNull(x + 1, y - 1),
-                        getCanalValueOrNull(x - 1, y),
-                        getCanalValueOrNull(x, y),
-                        getCanalValueOrNull(x + 1, y),
-                        getCanalValueOrNull(x - 1, y + 1),
-                        getCanalValueOrNull(x, y + 1),
-                        getCanalValueOrNull(x + 1, y + 1)
-                );
-                put(x, y, operator.apply(x, y, neighbourhood));
-            });
+    public void pointOperation(PixelOperator operator) {
+        IntBuffer pixels = this.pixels;
+        executor().forEachBand(width, height, (rowFrom, rowTo) -> {
+            int i = rowFrom * width;
+            for (int y = rowFrom; y < rowTo; y++) {
+                for (int x = 0; x < width; x++, i++) {
+                    pixels.put(i, operator.apply(x, y, pixels.get(i)));
+                }
+            }
         });
     }
 
-    public Histogram histogram() {
-        int[] red = new int[256];
-        int[] green = new int[256];
-        int[] blue = new int[256];
-        for (int i = 0; i < 256; i++) {
-            red[i] = 0;
-            blue[i] = 0;
-            green[i] = 0;
-        }
-        for (Map.Entry<Integer, Map<Integer, Canals>> e : map.entrySet()) {
-            Integer x = e.getKey();
-            Map<Integer, Canals> value = e.getValue();
-            for (Map.Entry<Integer, Canals> entry : value.entrySet()) {
-                Integer y = entry.getKey();
-                Canals canals = entry.getValue();
-                red[canals.red]++;
-                green[canals.green]++;
-                blue[canals.blue]++;
+    public void pointOperation(PointOperation operation) {
+        IntBuffer pixels = this.pixels;
+        executor().forEachBand(width, height, (rowFrom, rowTo) -> {
+            for (int i = rowFrom * width, end = rowTo * width; i < end; i++) {
+                pixels.put(i, operation.apply(pixels.get(i)));
             }
+        });
+    }
+
+    /**
+     * Neighbours are always read from the pixels as they were before the pass: the
+     * results go to a scratch map that is copied back once every pixel is computed.
+     *
+     * @deprecated builds a {@link Neighbourhood3x3} for every pixel; masks go through
+     * {@link MaskConvolution}, which walks the pixel buffer without allocating
+     */
+    @Deprecated
+    public void neighbourhoodOperation(Function3<Integer, Integer, Neighbourhood3x3, Canals> operator) {
+        try (ImageMap target = allocate(width, height).withExecutor(executor)) {
+            neighbourhoodOperation(operator, target);
+            pixels.duplicate().put(target.pixels.duplicate());
+        }
+    }
+
+    /**
+     * Writes the result of the operation to {@code target}; this map is left unchanged.
+     *
+     * @deprecated builds a {@link Neighbourhood3x3} for every pixel; masks go through
+     * {@link MaskConvolution}, which walks the pixel buffer without allocating
+     */
+    @Deprecated
+    public void neighbourhoodOperation(Function3<Integer, Integer, Neighbourhood3x3, Canals> operator, ImageMap target) {
+        if (target == this) {
+            throw new IllegalArgumentException("Neighbourhood operation cannot write into its own source");
         }
-        return new Histogram(red, green, blue);
+        executor().forEachBand(width, height, (rowFrom, rowTo) -> {
+            for (int y = rowFrom; y < rowTo; y++) {
+                for (int x = 0; x < width; x++) {
+                    Neighbourhood3x3 neighbourhood = new Neighbourhood3x3(
+                            getCanalValueOrNull(x - 1, y - 1),
+                            getCanalValueOrNull(x, y - 1),
+                            getCanalValueOrNull(x + 1, y - 1),
+                            getCanalValueOrNull(x - 1, y),
+                            getCanalValueOrNull(x, y),
+                            getCanalValueOrNull(x + 1, y),
+                            getCanalValueOrNull(x - 1, y + 1),
+                            getCanalValueOrNull(x, y + 1),
+                            getCanalValueOrNull(x + 1, y + 1)
+                    );
+                    target.put(x, y, operator.apply(x, y, neighbourhood));
+                }
+            }
+        });
+    }
+
+    public Histogram histogram() {
+        int[][] counts = executor().invoke(new HistogramTask(pixels, width, 0, height));
+        return new Histogram(counts[0], counts[1], counts[2]);
     }
 
     private Canals getCanalValueOrNull(int x, int y) {
-        if (x < 0 || x >= width() || y < 0 || y >= height()) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
             return null;
         }
-        return map.get(x).get(y);
+        return get(x, y);
     }
 
 }
@@ -11,7 +11,9 @@ public class ImageSerializer {
 //        File outputFile = fileChooser.showOpenDilog(null);
 //        File outputFile = new File("/Users/jakubzmuda/hackz/imageProcessing/output.bmp");
 //        BufferedImage bImage = SwingFXUtils.fromFXImage(image, null);
-        Mat mat = ImageUtils.imageToMat(image);
+        try (MatScope scope = MatScope.open("ImageSerializer")) {
+            Mat mat = scope.adopt(ImageUtils.imageToMat(image));
             Imgcodecs.imwrite("output.bmp", mat);
+        }
     }
 }
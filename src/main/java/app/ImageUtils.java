@@ -7,12 +7,9 @@ import javafx.scene.image.*;
 import javafx.scene.paint.Color;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfByte;
-import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.nio.ByteBuffer;
 
 import static org.opencv.imgproc.Imgproc.THRESH_BINARY;
@@ -71,7 +68,8 @@ public class ImageUtils {
 
     /**
      * Konwertuje obiekt Image do obiektu Mat obsługiwanego przez
-     * bibliotekę OpenCV.
+     * bibliotekę OpenCV. Obiekt Mat pobierany jest z {@link MatPool}
+     * i po użyciu powinien zostać do niej zwrócony.
      *
      * @param image obraz do konwersji
      * @return obiekt <tt>Mat</tt> z obrazem
@@ -79,29 +77,86 @@ public class ImageUtils {
     public static Mat imageToMat(Image image) {
         int width = (int) image.getWidth();
         int height = (int) image.getHeight();
-        byte[] buffer = new byte[width * height * 4];
+        byte[] buffer = MatPool.acquireBuffer(width * height * 4);
 
         PixelReader reader = image.getPixelReader();
         WritablePixelFormat<ByteBuffer> format = WritablePixelFormat.getByteBgraInstance();
         reader.getPixels(0, 0, width, height, format, buffer, 0, width * 4);
 
-        Mat mat = new Mat(height, width, CvType.CV_8UC4);
+        Mat mat = MatPool.acquire(height, width, CvType.CV_8UC4);
         mat.put(0, 0, buffer);
+        MatPool.releaseBuffer(buffer);
 
         return mat;
     }
 
     /**
      * Konwertuje obiekt Mat do obietku Image obsługiwanego przez Javę.
+     * Piksele kopiowane są bezpośrednio do <tt>WritableImage</tt>, bez kodowania
+     * do formatu BMP. Obsługiwane są obrazy 1-, 3- i 4-kanałowe; obrazy o głębi
+     * innej niż CV_8U (np. CV_32F po filtracji) są najpierw sprowadzane do
+     * CV_8U z nasyceniem, tak jak robił to wcześniej <tt>Imgcodecs.imencode</tt>.
      *
      * @param mat obraz do konwersji
      * @return obiekt <tt>Image</tt> z obrazem.
      */
     public static Image mat2Image(Mat mat) {
-        MatOfByte buffer = new MatOfByte();
-        Imgcodecs.imencode(".bmp", mat, buffer);
+        Mat bgra = toBgra(mat);
+        int width = bgra.cols();
+        int height = bgra.rows();
+        byte[] buffer = MatPool.acquireBuffer(width * height * 4);
+        bgra.get(0, 0, buffer);
+        if (bgra != mat) {
+            MatPool.release(bgra);
+        }
+
+        if (mat.channels() == 4) {
+            for (int i = 3; i < buffer.length; i += 4) {
+                buffer[i] = (byte) 255;
+            }
+        }
+
+        WritableImage image = new WritableImage(width, height);
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getByteBgraInstance(), buffer, 0, width * 4);
+        MatPool.releaseBuffer(buffer);
+
+        return image;
+    }
 
-        return new Image(new ByteArrayInputStream(buffer.toArray()));
+    /**
+     * Sprowadza obraz do postaci ciągłego obiektu Mat typu CV_8UC4 (BGRA).
+     *
+     * @param mat obraz wejściowy
+     * @return obraz BGRA (może być tym samym obiektem co obraz wejściowy)
+     */
+    private static Mat toBgra(Mat mat) {
+        Mat bytes = mat;
+        if (mat.depth() != CvType.CV_8U) {
+            bytes = MatPool.acquire(mat.rows(), mat.cols(), CvType.CV_8UC(mat.channels()));
+            mat.convertTo(bytes, CvType.CV_8U);
+        }
+
+        Mat bgra;
+        switch (bytes.channels()) {
+            case 1:
+                bgra = MatPool.acquire(bytes.rows(), bytes.cols(), CvType.CV_8UC4);
+                Imgproc.cvtColor(bytes, bgra, Imgproc.COLOR_GRAY2BGRA);
+                break;
+            case 3:
+                bgra = MatPool.acquire(bytes.rows(), bytes.cols(), CvType.CV_8UC4);
+                Imgproc.cvtColor(bytes, bgra, Imgproc.COLOR_BGR2BGRA);
+                break;
+            case 4:
+                bgra = bytes.isContinuous() ? bytes : bytes.clone();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported number of channels: " + bytes.channels());
+        }
+
+        if (bytes != mat && bytes != bgra) {
+            MatPool.release(bytes);
+        }
+        return bgra;
     }
 
     /**
@@ -111,11 +166,27 @@ public class ImageUtils {
      * @return obiekt <tt>Image</tt> w skali szarości
      */
     public static Image toGrayscale(Image image) {
-        Mat inImage = ImageUtils.imageToMat(image);
-        Mat outImage = new Mat();
-        Imgproc.cvtColor(inImage, outImage, Imgproc.COLOR_BGR2GRAY);
+        try (MatScope scope = MatScope.open("ImageUtils.toGrayscale")) {
+            Mat inImage = scope.adopt(ImageUtils.imageToMat(image));
+            Mat outImage = scope.acquire(inImage.rows(), inImage.cols(), CvType.CV_8UC1);
+            Imgproc.cvtColor(inImage, outImage, Imgproc.COLOR_BGR2GRAY);
+
+            return ImageUtils.mat2Image(outImage);
+        }
+    }
+
+    /**
+     * Tworzy szaroodcieniową kopię obrazu (konwersja <tt>COLOR_RGB2GRAY</tt>).
+     * Obiekt wynikowy pobierany jest z {@link MatPool}, obraz wejściowy nie jest modyfikowany.
+     *
+     * @param image obraz wejściowy
+     * @return obiekt <tt>Mat</tt> typu CV_8UC1
+     */
+    public static Mat rgbToGray(Mat image) {
+        Mat gray = MatPool.acquire(image.rows(), image.cols(), CvType.CV_8UC1);
+        Imgproc.cvtColor(image, gray, Imgproc.COLOR_RGB2GRAY);
 
-        return ImageUtils.mat2Image(outImage);
+        return gray;
     }
 
     /**
@@ -129,9 +200,11 @@ public class ImageUtils {
     }
 
     public static Image binarize(Image image) {
-        Mat mat = imageToMat(image);
-        binarize(mat);
+        try (MatScope scope = MatScope.open("ImageUtils.binarize")) {
+            Mat mat = scope.adopt(imageToMat(image));
+            binarize(mat);
 
-        return mat2Image(mat);
+            return mat2Image(mat);
+        }
     }
 }
@@ -41,6 +41,11 @@ public class Mask3x3 implements IMask {
      */
     private Mat mat;
 
+    /**
+     * Rozkład maski na filtry jednowymiarowe lub <tt>null</tt>, jeśli maska nie jest separowalna.
+     */
+    private SeparableKernel separableKernel;
+
     /**
      * Konstruktor tworzący maskę.
      *
@@ -62,25 +67,25 @@ public class Mask3x3 implements IMask {
     }
 
     /**
-     * Tworzy obiekt Mat z wartości maski.
+     * Tworzy obiekt Mat z wartości maski. Jeśli obiekt już istnieje (np. po zmianie
+     * środkowego elementu), jego wartości są nadpisywane zamiast tworzenia nowego.
      */
     private void createMat() {
-        mat = new Mat(size, size, CV_32F) {
-            {
-                int divider = kernelSize != 0 ? kernelSize : 1;
-                put(0, 0, (values[0] / divider));
-                put(0, 1, (values[1] / divider));
-                put(0, 2, (values[2] / divider));
-
-                put(1, 0, (values[3] / divider));
-                put(1, 1, (values[4] / divider));
-                put(1, 2, (values[5] / divider));
-
-                put(2, 0, (values[6] / divider));
-                put(2, 1, (values[7] / divider));
-                put(2, 2, (values[8] / divider));
-            }
-        };
+        if (mat == null) {
+            mat = new Mat(size, size, CV_32F);
+        }
+
+        int divider = kernelSize != 0 ? kernelSize : 1;
+        float[] scaled = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            scaled[i] = (float) (values[i] / divider);
+        }
+        mat.put(0, 0, scaled);
+
+        if (separableKernel != null) {
+            separableKernel.release();
+        }
+        separableKernel = SeparableKernel.of(values, size, divider);
     }
 
     /**
@@ -108,6 +113,16 @@ public class Mask3x3 implements IMask {
         createMat();
     }
 
+    /**
+     * Zwalnia pamięć obiektów Mat maski. Maska nie może być potem używana.
+     */
+    public void release() {
+        mat.release();
+        if (separableKernel != null) {
+            separableKernel.release();
+        }
+    }
+
     /**
      * Zamienia maskę na tabelkę z jej wartościami.
      *
@@ -131,6 +146,17 @@ public class Mask3x3 implements IMask {
         return mat;
     }
 
+    @Override
+    public SeparableKernel getSeparableKernel() {
+        return separableKernel;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
     public double[] getValues() {
         return values;
     }
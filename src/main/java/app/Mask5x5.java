@@ -36,6 +36,11 @@ public class Mask5x5 implements IMask {
      */
     private Mat mat;
 
+    /**
+     * Rozkład maski na filtry jednowymiarowe lub <tt>null</tt>, jeśli maska nie jest separowalna.
+     */
+    private SeparableKernel separableKernel;
+
     /**
      * Konstruktor tworzący maskę.
      *
@@ -55,21 +60,25 @@ public class Mask5x5 implements IMask {
     }
 
     /**
-     * Tworzy obiekt Mat z wartości maski.
+     * Tworzy obiekt Mat z wartości maski. Jeśli obiekt już istnieje, jego wartości są
+     * nadpisywane zamiast tworzenia nowego.
      */
     private void createMat() {
-        mat = new Mat(size, size, CV_32F) {
-            {
-                int divider = kernelSize != 0 ? kernelSize : 1;
-
-                for (int row = 0; row < size; row++) {
-                    for (int col = 0; col < size; col++) {
-                        double value = values[row * size + col];
-                        put(row, col, value / divider);
-                    }
-                }
-            }
-        };
+        if (mat == null) {
+            mat = new Mat(size, size, CV_32F);
+        }
+
+        int divider = kernelSize != 0 ? kernelSize : 1;
+        float[] scaled = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            scaled[i] = (float) (values[i] / divider);
+        }
+        mat.put(0, 0, scaled);
+
+        if (separableKernel != null) {
+            separableKernel.release();
+        }
+        separableKernel = SeparableKernel.of(values, size, divider);
     }
 
     /**
@@ -86,6 +95,16 @@ public class Mask5x5 implements IMask {
         return (int) sum;
     }
 
+    /**
+     * Zwalnia pamięć obiektów Mat maski. Maska nie może być potem używana.
+     */
+    public void release() {
+        mat.release();
+        if (separableKernel != null) {
+            separableKernel.release();
+        }
+    }
+
     /**
      * Zamienia maskę na tabelkę z jej wartościami.
      *
@@ -110,4 +129,19 @@ public class Mask5x5 implements IMask {
     public Mat getMat() {
         return mat;
     }
+
+    @Override
+    public SeparableKernel getSeparableKernel() {
+        return separableKernel;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public double[] getValues() {
+        return values;
+    }
 }
@@ -0,0 +1,247 @@
+package app;
+
+import java.nio.IntBuffer;
+
+/**
+ * Convolves the packed pixel buffer with an odd-sized square integer kernel. Every
+ * canal is accumulated in plain ints and divided by the kernel divider with integer
+ * rounding that reproduces {@code Math.round((float) sum / divider)} exactly, so
+ * the output is identical to the original Lab 3 implementation.
+ * <p>
+ * The interior is summed by a {@link SpecializedKernel} for the concrete weights: zero
+ * taps are skipped, taps of equal weight are added up before a single multiplication
+ * and two canals share every add, so a kernel costs in proportion to its non-zero
+ * entries and distinct weights. Only the border ring, {@code size / 2} pixels wide,
+ * goes through the {@link BorderOperationStrategy}. The result is
+ * written to a separate buffer, the source is never modified.
+ */
+class MaskConvolution {
+
+    /**
+     * Replacement order for missing neighbours of a 3x3 window under
+     * {@link BorderOperationStrategy#DUPLICATE}, the same as in
+     * {@link Neighbourhood3x3#adjustBorderValues()}. Larger kernels take the nearest
+     * pixel inside the image instead.
+     */
+    private static final int[][] DUPLICATE_ALTERNATIVES = {
+            {0, 1, 3, 4},
+            {1, 0, 3, 4},
+            {2, 1, 5, 4},
+            {3, 0, 6, 4},
+            {4},
+            {5, 2, 8, 4},
+            {6, 3, 8, 4},
+            {7, 6, 8, 4},
+            {8, 7, 5, 4}
+    };
+
+    /**
+     * Above this magnitude a float quotient may be rounded differently than the exact
+     * one, so integer rounding would no longer match the original output.
+     */
+    private static final long EXACT_ROUNDING_LIMIT = 1 << 22;
+
+    private final int size;
+    private final int radius;
+    private final int[] weights;
+    private final int divider;
+    private final BorderOperationStrategy strategy;
+    private final boolean exactRounding;
+    private final Reciprocal reciprocal;
+    private final SpecializedKernel kernel;
+
+    MaskConvolution(Mask mask, BorderOperationStrategy strategy) {
+        this(new int[]{mask.i0, mask.i1, mask.i2, mask.i3, mask.i4, mask.i5, mask.i6, mask.i7, mask.i8}, 3, mask.sum(), strategy);
+    }
+
+    /**
+     * @param weights  kernel weights, row by row
+     * @param size     odd kernel size
+     * @param divider  the weighted sum is divided by it; under {@link BorderOperationStrategy#EXISTING_ONLY}
+     *                 the weights that fall outside the image are subtracted from it
+     */
+    MaskConvolution(int[] weights, int size, int divider, BorderOperationStrategy strategy) {
+        if (size % 2 == 0 || weights.length != size * size) {
+            throw new IllegalArgumentException("Kernel must be square with an odd size, got " + weights.length + " weights for size " + size);
+        }
+        this.size = size;
+        this.radius = size / 2;
+        this.weights = weights.clone();
+        this.divider = divider;
+        this.strategy = strategy;
+
+        long absoluteSum = Math.abs((long) divider);
+        for (int weight : weights) {
+            absoluteSum += Math.abs((long) weight);
+        }
+        this.exactRounding = absoluteSum * 255 < EXACT_ROUNDING_LIMIT;
+        this.reciprocal = exactRounding && divider != 0 ? new Reciprocal(divider, absoluteSum * 255) : null;
+        this.kernel = SpecializedKernel.of(weights, size);
+    }
+
+    /**
+     * Filters {@code source} into {@code target} in row bands on the source's executor.
+     */
+    void apply(ImageMap source, ImageMap target) {
+        IntBuffer src = source.buffer();
+        IntBuffer dst = target.buffer();
+        int width = source.width();
+        int height = source.height();
+        source.executor().forEachBand(width, height, (rowFrom, rowTo) -> apply(src, dst, width, height, rowFrom, rowTo));
+    }
+
+    /**
+     * Filters rows {@code [rowFrom, rowTo)}; neighbours are read from the whole source.
+     */
+    void apply(IntBuffer src, IntBuffer dst, int width, int height, int rowFrom, int rowTo) {
+        int[] offsets = kernel.offsets(width);
+        int[][] rows = new int[5][Math.max(0, width - 2 * radius)];
+        for (int y = rowFrom; y < rowTo; y++) {
+            if (y < radius || y >= height - radius || width < size) {
+                for (int x = 0; x < width; x++) {
+                    dst.put(y * width + x, border(src, width, height, x, y));
+                }
+                continue;
+            }
+            for (int x = 0; x < radius; x++) {
+                dst.put(y * width + x, border(src, width, height, x, y));
+            }
+            interiorRow(src, dst, width, y, offsets, rows);
+            for (int x = width - radius; x < width; x++) {
+                dst.put(y * width + x, border(src, width, height, x, y));
+            }
+        }
+    }
+
+    private void interiorRow(IntBuffer src, IntBuffer dst, int width, int y, int[] offsets, int[][] rows) {
+        int[] red = rows[0];
+        int[] green = rows[1];
+        int[] blue = rows[2];
+        int count = width - 2 * radius;
+        int from = y * width + radius;
+        kernel.sums(src, from, count, offsets, red, green, blue, rows[3], rows[4]);
+        for (int x = 0; x < count; x++) {
+            dst.put(from + x, Canals.pack(divide(red[x]), divide(green[x]), divide(blue[x])));
+        }
+    }
+
+    private int border(IntBuffer src, int width, int height, int x, int y) {
+        int middle = src.get(y * width + x);
+        if (strategy == BorderOperationStrategy.NO_CHANGE) {
+            return middle;
+        }
+
+        int taps = weights.length;
+        int[] window = new int[taps];
+        boolean[] present = new boolean[taps];
+        for (int i = 0; i < taps; i++) {
+            int nx = x + i % size - radius;
+            int ny = y + i / size - radius;
+            present[i] = nx >= 0 && nx < width && ny >= 0 && ny < height;
+            if (present[i]) {
+                window[i] = src.get(ny * width + nx);
+            } else if (strategy == BorderOperationStrategy.DUPLICATE && size != 3) {
+                window[i] = src.get(clamp(ny, height) * width + clamp(nx, width));
+            }
+        }
+
+        int borderDivider = divider;
+        if (strategy == BorderOperationStrategy.DUPLICATE) {
+            if (size == 3) {
+                int[] adjusted = new int[9];
+                for (int i = 0; i < 9; i++) {
+                    adjusted[i] = firstPresent(window, present, DUPLICATE_ALTERNATIVES[i]);
+                }
+                window = adjusted;
+            }
+        } else {
+            for (int i = 0; i < taps; i++) {
+                if (!present[i]) {
+                    borderDivider -= weights[i];
+                }
+            }
+        }
+
+        int red = 0;
+        int green = 0;
+        int blue = 0;
+        for (int i = 0; i < taps; i++) {
+            red += Canals.red(window[i]) * weights[i];
+            green += Canals.green(window[i]) * weights[i];
+            blue += Canals.blue(window[i]) * weights[i];
+        }
+        return Canals.pack(round(red, borderDivider), round(green, borderDivider), round(blue, borderDivider));
+    }
+
+    /**
+     * Interior division by the kernel divider.
+     */
+    private int divide(int sum) {
+        return reciprocal != null ? reciprocal.round(sum) : round(sum, divider);
+    }
+
+    private int round(int sum, int divider) {
+        return exactRounding ? roundedQuotient(sum, divider) : Math.round((float) sum / divider);
+    }
+
+    /**
+     * {@code Math.round((float) sum / divider)} in integer arithmetic, including the
+     * float behaviour of a zero divider. Exact while {@code |sum|} and {@code |divider|}
+     * stay below {@link #EXACT_ROUNDING_LIMIT}.
+     */
+    static int roundedQuotient(int sum, int divider) {
+        if (divider == 0) {
+            return sum > 0 ? Integer.MAX_VALUE : sum < 0 ? Integer.MIN_VALUE : 0;
+        }
+        if (divider < 0) {
+            sum = -sum;
+            divider = -divider;
+        }
+        return (int) Math.floorDiv(2L * sum + divider, 2L * divider);
+    }
+
+    private static int clamp(int coordinate, int length) {
+        return Math.max(0, Math.min(length - 1, coordinate));
+    }
+
+    private static int firstPresent(int[] window, boolean[] present, int[] alternatives) {
+        for (int i : alternatives) {
+            if (present[i]) {
+                return window[i];
+            }
+        }
+        throw new RuntimeException("no alternatives for first present border adjusted value");
+    }
+
+    /**
+     * {@link #roundedQuotient} for a fixed divider without a division instruction:
+     * {@code floor((2 * sum + d) / 2d)} is computed as a 32.32 fixed-point multiplication
+     * by the reciprocal of {@code 2d} (Granlund-Montgomery). The dividend is shifted by
+     * a multiple of {@code 2d} first so that it is never negative.
+     */
+    private static final class Reciprocal {
+
+        private final int sign;
+        private final long halfDivisor;
+        private final long offset;
+        private final long quotientOffset;
+        private final long multiplier;
+        private final int shift;
+
+        Reciprocal(int divider, long maxAbsoluteSum) {
+            this.sign = divider < 0 ? -1 : 1;
+            long divisor = 2L * Math.abs((long) divider);
+            this.halfDivisor = divisor / 2;
+            this.quotientOffset = (2 * maxAbsoluteSum + divisor) / divisor + 1;
+            this.offset = quotientOffset * divisor;
+            int bits = 64 - Long.numberOfLeadingZeros(divisor - 1);
+            this.shift = 32 + bits;
+            this.multiplier = ((1L << shift) + divisor - 1) / divisor;
+        }
+
+        int round(int sum) {
+            long dividend = 2L * sign * sum + halfDivisor + offset;
+            return (int) (((dividend * multiplier) >>> shift) - quotientOffset);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package app;
+
+import org.opencv.core.Mat;
+
+import static org.opencv.core.CvType.CV_32F;
+
+/**
+ * Klasa reprezentuje kwadratową maskę o dowolnym nieparzystym rozmiarze
+ * z jawnie podanym dzielnikiem. Powstaje m.in. przy składaniu masek
+ * i podnoszeniu maski do potęgi (zob. {@link MaskUtils}).
+ */
+public class MaskNxN implements IMask {
+
+    /**
+     * Nazwa maski.
+     */
+    private final String name;
+
+    /**
+     * Tablica wartości w masce (wierszami).
+     */
+    private final double[] values;
+
+    /**
+     * Wielkość maski.
+     */
+    private final int size;
+
+    /**
+     * Dzielnik wartości maski potrzebny przy tworzeniu obiektu Mat.
+     */
+    private final double divider;
+
+    /**
+     * Suma wartości w masce.
+     */
+    private final int kernelSize;
+
+    /**
+     * Obiekt Mat z wartościami z maski (podzielonymi przez dzielnik).
+     */
+    private final Mat mat;
+
+    /**
+     * Rozkład maski na filtry jednowymiarowe lub <tt>null</tt>, jeśli maska nie jest separowalna.
+     */
+    private final SeparableKernel separableKernel;
+
+    /**
+     * Konstruktor tworzący maskę.
+     *
+     * @param name    nazwa maski
+     * @param size    wielkość maski (nieparzysta)
+     * @param divider dzielnik wartości maski (różny od zera)
+     * @param values  tablica wartości w masce (musi być ich size * size)
+     */
+    public MaskNxN(String name, int size, double divider, double... values) {
+        if (size % 2 == 0 || values.length != size * size) {
+            throw new IllegalArgumentException("Incorrect values number!");
+        }
+        if (divider == 0) {
+            throw new IllegalArgumentException("Divider must not be zero!");
+        }
+
+        this.name = name;
+        this.size = size;
+        this.divider = divider;
+        this.values = values;
+        this.kernelSize = calculateKernelSize();
+        this.mat = createMat();
+        this.separableKernel = SeparableKernel.of(values, size, divider);
+    }
+
+    /**
+     * Tworzy obiekt Mat z wartości maski.
+     *
+     * @return obiekt Mat
+     */
+    private Mat createMat() {
+        float[] scaled = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            scaled[i] = (float) (values[i] / divider);
+        }
+        Mat mat = new Mat(size, size, CV_32F);
+        mat.put(0, 0, scaled);
+        return mat;
+    }
+
+    /**
+     * Sumuje wartości w masce.
+     *
+     * @return sumę wartości w masce
+     */
+    private int calculateKernelSize() {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+
+        return (int) sum;
+    }
+
+    /**
+     * Zwalnia pamięć obiektów Mat maski. Maska nie może być potem używana.
+     */
+    public void release() {
+        mat.release();
+        if (separableKernel != null) {
+            separableKernel.release();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int row = 0; row < size; row++) {
+            if (row > 0) {
+                builder.append('\n');
+            }
+            for (int col = 0; col < size; col++) {
+                builder.append(String.format("%4d", (int) values[row * size + col]));
+            }
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public int getKernelSize() {
+        return kernelSize;
+    }
+
+    @Override
+    public Mat getMat() {
+        return mat;
+    }
+
+    @Override
+    public double[] getValues() {
+        return values;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public SeparableKernel getSeparableKernel() {
+        return separableKernel;
+    }
+
+    /**
+     * @return dzielnik wartości maski
+     */
+    public double getDivider() {
+        return divider;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
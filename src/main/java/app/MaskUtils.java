@@ -1,100 +1,112 @@
 package app;
 
+import java.util.Arrays;
+
 /**
  * Klasa do operacji na maskach.
  */
 public class MaskUtils {
 
     /**
-     * Wielkość maski pomocniczej, na ktorej przeprowadzana jest
-     * operacja łączenia dwóch masek 3x3.
-     */
-    private static final int HELPER_MASK_SIZE = 7;
-
-    /**
-     * Srodek maski pomocniczej.
-     */
-    private static final int CENTER = (HELPER_MASK_SIZE - 1) / 2;
-
-    /**
-     * Łączy dwie maski 3x3 w jedną maskę 5x5.
+     * Łączy dwie maski 3x3 w jedną maskę 5x5, której jednokrotne użycie daje ten sam
+     * wynik co filtracja maską 1, a potem maską 2 (zob. {@link #compose}).
      *
      * @param mask1 maska 1.
      * @param mask2 maska 2.
      * @return maska wynikowa
      */
-    public static Mask5x5 combineMasks(Mask3x3 mask1, Mask3x3 mask2) {
-        double[] values1 = mask1.getValues();
-        double[] values2 = mask2.getValues();
-        double[] result5x5 = convertTo7x7AndCombineValues(values1, values2);
-
-        return new Mask5x5("COMBINED_MASK", result5x5);
+    public static MaskNxN combineMasks(Mask3x3 mask1, Mask3x3 mask2) {
+        return compose("COMBINED_MASK", mask1, mask2);
     }
 
     /**
-     * Konwertuje drugą maskę 3x3 na maskę 7x7 (maska zer z wartościami
-     * maski 3x3 na środkowych elementach) i łączy maski.
+     * Składa maski w jedną: filtracja maską wynikową daje ten sam wynik co kolejne
+     * filtracje podanymi maskami (w podanej kolejności). Wartości maski wynikowej to
+     * pełny splot wartości masek, jej wielkość to suma wielkości pomniejszonych o 1
+     * (plus 1), a dzielnik to iloczyn dzielników masek ({@link #divider}) - a nie,
+     * jak w masce 3x3 lub 5x5, suma wartości, która dla masek o sumie 0 jest inna.
      *
-     * @param values1 wartości maski 1.
-     * @param values2 wartości maski 2.
-     * @return wartości wynikowej maski 5x5
+     * @param masks maski (co najmniej jedna), w kolejności filtracji
+     * @return maska wynikowa
      */
-    private static double[] convertTo7x7AndCombineValues(double[] values1, double[] values2) {
-        double[] values7x7 = fill7x7ArrayWithValues2(values2);
+    public static MaskNxN compose(IMask... masks) {
+        return compose("COMPOSED_" + masks.length, masks);
+    }
+
+    private static MaskNxN compose(String name, IMask... masks) {
+        if (masks.length == 0) {
+            throw new IllegalArgumentException("No masks to compose!");
+        }
+        double[] result = masks[0].getValues();
+        int resultSize = masks[0].getSize();
+        double resultDivider = divider(masks[0]);
+        for (int i = 1; i < masks.length; i++) {
+            result = convolve(result, resultSize, masks[i].getValues(), masks[i].getSize());
+            resultSize += masks[i].getSize() - 1;
+            resultDivider *= divider(masks[i]);
+        }
 
-        return combineValues(values1, values7x7);
+        return new MaskNxN(name, resultSize, resultDivider, result.clone());
     }
 
     /**
-     * Konwertuje wartości z maski 3x3 na wartości maski 7x7.
+     * Podnosi maskę do potęgi: tworzy maskę, której jednokrotne użycie daje ten sam
+     * wynik co n-krotna filtracja podaną maską (splot maski z samą sobą n razy).
+     * Wielkość maski wynikowej to n * (size - 1) + 1, dzielnik to dzielnik maski do potęgi n.
      *
-     * @param values2 wartości maski 3x3
-     * @return wartości maski 7x7
+     * @param mask maska
+     * @param n    wykładnik (co najmniej 1)
+     * @return maska wynikowa
      */
-    private static double[] fill7x7ArrayWithValues2(double[] values2) {
-        double[] values7x7 = new double[HELPER_MASK_SIZE * HELPER_MASK_SIZE];
-        int offset = CENTER - 1;
-        for (int row = 0; row < 3; row++) {
-            for (int col = 0; col < 3; col++) {
-                int posIn7x7 = (row + offset) * HELPER_MASK_SIZE + col + offset;
-                int posIn3x3 = row * 3 + col;
-                values7x7[posIn7x7] = values2[posIn3x3];
-            }
+    public static MaskNxN power(IMask mask, int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Exponent must be positive!");
         }
-        return values7x7;
+        IMask[] masks = new IMask[n];
+        Arrays.fill(masks, mask);
+        return compose("POWER_" + n, masks);
     }
 
     /**
-     * Lączy wartości maski 3x3 z wartościami maski 7x7 i oblicza wartości maski 5x5
+     * Dzielnik, przez który dzielone są wartości maski: jawny dzielnik maski
+     * {@link MaskNxN}, a dla pozostałych suma wartości (lub 1, jeśli suma wynosi 0).
      *
-     * @param values1   wartości maski 3x3
-     * @param values7x7 wartości maski 7x7
-     * @return wartości wynikowej maski 5x5
+     * @param mask maska
+     * @return dzielnik maski
      */
-    private static double[] combineValues(double[] values1, double[] values7x7) {
-        double[] result5x5 = new double[25];
-        int posIn5x5 = 0;
-        for (int row = 1; row < HELPER_MASK_SIZE - 1; row++) {
-            for (int col = 1; col < HELPER_MASK_SIZE - 1; col++, posIn5x5++) {
-                int pos0 = (row - 1) * HELPER_MASK_SIZE + col - 1;
-                int pos1 = (row - 1) * HELPER_MASK_SIZE + col;
-                int pos2 = (row - 1) * HELPER_MASK_SIZE + col + 1;
-                int pos3 = row * HELPER_MASK_SIZE + col - 1;
-                int pos4 = row * HELPER_MASK_SIZE + col;
-                int pos5 = row * HELPER_MASK_SIZE + col + 1;
-                int pos6 = (row + 1) * HELPER_MASK_SIZE + col - 1;
-                int pos7 = (row + 1) * HELPER_MASK_SIZE + col;
-                int pos8 = (row + 1) * HELPER_MASK_SIZE + col + 1;
-
-                double newValue =
-                        values1[0] * values7x7[pos0] + values1[1] * values7x7[pos1] + values1[2] * values7x7[pos2] +
-                                values1[3] * values7x7[pos3] + values1[4] * values7x7[pos4] + values1[5] * values7x7[pos5] +
-                                values1[6] * values7x7[pos6] + values1[7] * values7x7[pos7] + values1[8] * values7x7[pos8];
+    public static double divider(IMask mask) {
+        if (mask instanceof MaskNxN) {
+            return ((MaskNxN) mask).getDivider();
+        }
+        return mask.getKernelSize() != 0 ? mask.getKernelSize() : 1;
+    }
 
-                result5x5[posIn5x5] = newValue;
+    /**
+     * Pełny splot dwóch masek kwadratowych. Filtracja (korelacja) maską a,
+     * a następnie maską b, jest równoważna filtracji splotem a i b.
+     *
+     * @param a     wartości pierwszej maski
+     * @param sizeA wielkość pierwszej maski
+     * @param b     wartości drugiej maski
+     * @param sizeB wielkość drugiej maski
+     * @return wartości maski o wielkości sizeA + sizeB - 1
+     */
+    private static double[] convolve(double[] a, int sizeA, double[] b, int sizeB) {
+        int size = sizeA + sizeB - 1;
+        double[] result = new double[size * size];
+        for (int rowA = 0; rowA < sizeA; rowA++) {
+            for (int colA = 0; colA < sizeA; colA++) {
+                double valueA = a[rowA * sizeA + colA];
+                if (valueA == 0) {
+                    continue;
+                }
+                for (int rowB = 0; rowB < sizeB; rowB++) {
+                    for (int colB = 0; colB < sizeB; colB++) {
+                        result[(rowA + rowB) * size + colA + colB] += valueA * b[rowB * sizeB + colB];
+                    }
+                }
             }
         }
-
-        return result5x5;
+        return result;
     }
 }
@@ -0,0 +1,126 @@
+package app;
+
+import org.opencv.core.Mat;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pula obiektów Mat i buforów bajtowych wielokrotnego użytku. Podgląd w oknach
+ * odświeżany jest przy każdej zmianie suwaka, więc zamiast za każdym razem
+ * alokować nową pamięć natywną, obiekty pobierane są z puli i do niej zwracane.
+ */
+public class MatPool {
+
+    /**
+     * Maksymalna liczba przechowywanych obiektów o tym samym rozmiarze i typie.
+     */
+    private static final int MAX_PER_KEY = 4;
+
+    private static final Map<Long, Deque<Mat>> MATS = new HashMap<>();
+    private static final Map<Integer, Deque<byte[]>> BUFFERS = new HashMap<>();
+
+    private MatPool() {
+    }
+
+    /**
+     * Pobiera z puli obiekt Mat o podanym rozmiarze i typie lub tworzy nowy,
+     * jeśli w puli nie ma pasującego. Zawartość obiektu jest nieokreślona.
+     *
+     * @param rows liczba wierszy
+     * @param cols liczba kolumn
+     * @param type typ obiektu (np. <tt>CvType.CV_8UC4</tt>)
+     * @return obiekt Mat
+     */
+    public static synchronized Mat acquire(int rows, int cols, int type) {
+        Deque<Mat> mats = MATS.get(key(rows, cols, type));
+        if (mats != null && !mats.isEmpty()) {
+            Mat mat = mats.pop();
+            NativeMemoryCounter.POOLED_MATS.released(MatScope.sizeOf(mat));
+            return mat;
+        }
+        return new Mat(rows, cols, type);
+    }
+
+    /**
+     * Zwraca obiekt Mat do puli. Obiekt jest przypisywany do rozmiaru i typu,
+     * które ma w chwili zwrotu. Jeśli pula jest pełna, pamięć obiektu jest zwalniana.
+     *
+     * @param mat obiekt do zwrócenia
+     */
+    public static synchronized void release(Mat mat) {
+        if (mat == null || mat.empty()) {
+            return;
+        }
+        if (!mat.isContinuous() || mat.isSubmatrix()) {
+            mat.release();
+            return;
+        }
+
+        Deque<Mat> mats = MATS.computeIfAbsent(key(mat.rows(), mat.cols(), mat.type()), key -> new ArrayDeque<>());
+        if (containsInstance(mats, mat)) {
+            return;
+        }
+        if (mats.size() < MAX_PER_KEY) {
+            mats.push(mat);
+            NativeMemoryCounter.POOLED_MATS.allocated(MatScope.sizeOf(mat));
+        } else {
+            mat.release();
+        }
+    }
+
+    /**
+     * Pobiera z puli bufor bajtowy o podanej długości lub tworzy nowy.
+     *
+     * @param size długość bufora
+     * @return bufor
+     */
+    public static synchronized byte[] acquireBuffer(int size) {
+        Deque<byte[]> buffers = BUFFERS.get(size);
+        if (buffers != null && !buffers.isEmpty()) {
+            return buffers.pop();
+        }
+        return new byte[size];
+    }
+
+    /**
+     * Zwraca bufor bajtowy do puli.
+     *
+     * @param buffer bufor do zwrócenia
+     */
+    public static synchronized void releaseBuffer(byte[] buffer) {
+        Deque<byte[]> buffers = BUFFERS.computeIfAbsent(buffer.length, size -> new ArrayDeque<>());
+        if (buffers.size() < MAX_PER_KEY && !containsInstance(buffers, buffer)) {
+            buffers.push(buffer);
+        }
+    }
+
+    /**
+     * Zwalnia wszystkie obiekty przechowywane w puli.
+     */
+    public static synchronized void clear() {
+        for (Deque<Mat> mats : MATS.values()) {
+            for (Mat mat : mats) {
+                NativeMemoryCounter.POOLED_MATS.released(MatScope.sizeOf(mat));
+                mat.release();
+            }
+        }
+        MATS.clear();
+        BUFFERS.clear();
+    }
+
+    private static long key(int rows, int cols, int type) {
+        return ((long) rows << 40) | ((long) cols << 16) | type;
+    }
+
+    private static <T> boolean containsInstance(Deque<T> deque, T instance) {
+        for (T element : deque) {
+            if (element == instance) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
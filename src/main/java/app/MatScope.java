@@ -0,0 +1,181 @@
+package app;
+
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Zakres życia obiektów Mat w ramach jednej operacji. Wszystkie obiekty
+ * zarejestrowane w zakresie są zwalniane (lub zwracane do {@link MatPool})
+ * przy jego zamknięciu, zamiast czekać na finalizator:
+ * <pre>
+ * try (MatScope scope = MatScope.open("wygładzanie")) {
+ *     Mat image = scope.adopt(ImageUtils.imageToMat(before));
+ *     Mat result = scope.acquire(image.rows(), image.cols(), CV_32FC4);
+ *     ...
+ * }
+ * </pre>
+ * Zakres zlicza też pamięć natywną zajmowaną przez swoje obiekty
+ * w {@link NativeMemoryCounter#MATS} oraz maksymalne zużycie dla każdej operacji.
+ */
+public class MatScope implements AutoCloseable {
+
+    /**
+     * Maksymalna liczba bajtów zajętych przez obiekty Mat w pojedynczym zakresie, według nazwy operacji.
+     */
+    private static final Map<String, Long> PEAK_BY_OPERATION = new ConcurrentHashMap<>();
+
+    /**
+     * Nazwa operacji.
+     */
+    private final String operation;
+
+    /**
+     * Obiekty zwracane do puli przy zamknięciu zakresu.
+     */
+    private final List<Mat> pooled = new ArrayList<>();
+
+    /**
+     * Obiekty zwalniane przy zamknięciu zakresu.
+     */
+    private final List<Mat> owned = new ArrayList<>();
+
+    /**
+     * Liczba bajtów ostatnio zgłoszona do licznika pamięci natywnej.
+     */
+    private long reportedBytes;
+
+    /**
+     * Maksymalna liczba bajtów zaobserwowana w tym zakresie.
+     */
+    private long peakBytes;
+
+    private boolean closed;
+
+    private MatScope(String operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Otwiera nowy zakres.
+     *
+     * @param operation nazwa operacji, pod którą zapisywane jest maksymalne zużycie pamięci
+     * @return nowy zakres
+     */
+    public static MatScope open(String operation) {
+        return new MatScope(operation);
+    }
+
+    /**
+     * Pobiera obiekt Mat z {@link MatPool}; przy zamknięciu zakresu wraca on do puli.
+     *
+     * @param rows liczba wierszy
+     * @param cols liczba kolumn
+     * @param type typ obiektu
+     * @return obiekt Mat
+     */
+    public Mat acquire(int rows, int cols, int type) {
+        return adopt(MatPool.acquire(rows, cols, type));
+    }
+
+    /**
+     * Rejestruje obiekt pobrany wcześniej z {@link MatPool} (np. przez
+     * {@link ImageUtils#imageToMat}); przy zamknięciu zakresu wraca on do puli.
+     *
+     * @param mat obiekt Mat
+     * @return ten sam obiekt
+     */
+    public Mat adopt(Mat mat) {
+        pooled.add(mat);
+        update();
+        return mat;
+    }
+
+    /**
+     * Rejestruje obiekt utworzony poza pulą (np. <tt>new Mat()</tt>, <tt>submat</tt>);
+     * przy zamknięciu zakresu jego pamięć jest zwalniana.
+     *
+     * @param mat obiekt Mat
+     * @return ten sam obiekt
+     */
+    public Mat track(Mat mat) {
+        owned.add(mat);
+        update();
+        return mat;
+    }
+
+    /**
+     * Aktualizuje licznik pamięci po operacjach, które mogły zmienić rozmiar
+     * lub typ zarejestrowanych obiektów.
+     */
+    public void update() {
+        long bytes = bytes();
+        if (bytes > reportedBytes) {
+            NativeMemoryCounter.MATS.allocated(bytes - reportedBytes);
+        } else {
+            NativeMemoryCounter.MATS.released(reportedBytes - bytes);
+        }
+        reportedBytes = bytes;
+        peakBytes = Math.max(peakBytes, bytes);
+    }
+
+    /**
+     * @return liczba bajtów zajmowanych obecnie przez obiekty zarejestrowane w zakresie
+     */
+    public long bytes() {
+        long bytes = 0;
+        for (Mat mat : pooled) {
+            bytes += sizeOf(mat);
+        }
+        for (Mat mat : owned) {
+            if (!mat.isSubmatrix()) {
+                bytes += sizeOf(mat);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return maksymalna liczba bajtów zaobserwowana w tym zakresie
+     */
+    public long peakBytes() {
+        return peakBytes;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        update();
+        PEAK_BY_OPERATION.merge(operation, peakBytes, Math::max);
+
+        for (Mat mat : owned) {
+            mat.release();
+        }
+        for (Mat mat : pooled) {
+            MatPool.release(mat);
+        }
+        NativeMemoryCounter.MATS.released(reportedBytes);
+        reportedBytes = 0;
+        owned.clear();
+        pooled.clear();
+    }
+
+    /**
+     * @return maksymalne zużycie pamięci przez obiekty Mat dla każdej operacji
+     */
+    public static Map<String, Long> peakBytesByOperation() {
+        return Collections.unmodifiableMap(new TreeMap<>(PEAK_BY_OPERATION));
+    }
+
+    static long sizeOf(Mat mat) {
+        return mat.total() * mat.elemSize();
+    }
+}
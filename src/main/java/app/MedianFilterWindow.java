@@ -282,17 +282,19 @@ public class MedianFilterWindow {
      * @return obraz wynikowy.
      */
     private Image applyMask() {
-        Mat image = ImageUtils.imageToMat(before);
-        Mat destination = new Mat(image.rows(), image.cols(), image.type());
-        image.copyTo(destination);
-
-        if (currentBorderType == BORDER_CONSTANT) {
-            applyMaskWithConstantBorder(image, destination);
-        } else {
-            applyMask(image, destination);
-        }
+        try (MatScope scope = MatScope.open("MedianFilterWindow")) {
+            Mat image = scope.adopt(ImageUtils.imageToMat(before));
+            Mat destination = scope.acquire(image.rows(), image.cols(), image.type());
+            image.copyTo(destination);
+
+            if (currentBorderType == BORDER_CONSTANT) {
+                applyMaskWithConstantBorder(image, destination, scope);
+            } else {
+                applyMask(image, destination);
+            }
 
-        return ImageUtils.mat2Image(image);
+            return ImageUtils.mat2Image(image);
+        }
     }
 
     /**
@@ -314,13 +316,14 @@ public class MedianFilterWindow {
      *
      * @param image       obraz wejściowy
      * @param destination obraz wyjściowy
+     * @param scope       zakres, w którym rejestrowane są obiekty pośrednie
      */
-    private void applyMaskWithConstantBorder(Mat image, Mat destination) {
+    private void applyMaskWithConstantBorder(Mat image, Mat destination, MatScope scope) {
         for (int i = 0; i < times; i++) {
             Imgproc.medianBlur(destination, destination, currentKernelSize);
         }
 
-        restoreBorder(image, destination);
+        restoreBorder(image, destination, scope);
     }
 
     /**
@@ -328,11 +331,12 @@ public class MedianFilterWindow {
      *
      * @param image       obraz wejściowy
      * @param destination obraz wyjściowy
+     * @param scope       zakres, w którym rejestrowane są obiekty pośrednie
      */
-    private void restoreBorder(Mat image, Mat destination) {
-        Mat cropped = destination.submat(1, destination.height() - 1, 1, destination.width() - 1);
+    private void restoreBorder(Mat image, Mat destination, MatScope scope) {
+        Mat cropped = scope.track(destination.submat(1, destination.height() - 1, 1, destination.width() - 1));
         cropped.convertTo(cropped, image.type());
-        cropped.copyTo(image.submat(1, image.height() - 1, 1, image.width() - 1));
+        cropped.copyTo(scope.track(image.submat(1, image.height() - 1, 1, image.width() - 1)));
     }
 
     private BarChart<String, Number> buildHistogram(Image image) {
@@ -26,6 +26,12 @@ public class MorphologyWindow {
     private static final int BORDER_MINIMUM = 254;
     private static final int BORDER_MAXIMUM = 255;
 
+    /**
+     * Poziomy jasności pikseli obrazu binarnego.
+     */
+    private static final double WHITE = 255;
+    private static final double BLACK = 0;
+
     /**
      * Minimalna wielkość kształu do operacji
      */
@@ -335,26 +341,64 @@ public class MorphologyWindow {
      * @return obraz po operacji
      */
     private Image applyOperation() {
-        Mat image = ImageUtils.imageToMat(before);
-
-        Mat shape = Imgproc.getStructuringElement(currentShape, new Size(currentSize, currentSize));
-        switch (currentOperation) {
-            case Imgproc.MORPH_ERODE:
-                Imgproc.erode(image, image, shape, new Point(-1, -1), times, currentBorderType, border);
-                break;
-            case Imgproc.MORPH_DILATE:
-                Imgproc.dilate(image, image, shape, new Point(-1, -1), times, currentBorderType, border);
-                break;
-            case Imgproc.MORPH_OPEN:
-            case Imgproc.MORPH_CLOSE:
-                Imgproc.morphologyEx(image, image, currentOperation, shape, new Point(-1, -1), times, currentBorderType, border);
+        try (MatScope scope = MatScope.open("MorphologyWindow")) {
+            Mat image = scope.adopt(ImageUtils.imageToMat(before));
+
+            BinaryImage binary = currentBorderType != Core.BORDER_CONSTANT ? BinaryImage.fromMat(image, WHITE, BLACK) : null;
+            if (binary != null) {
+                applyOperation(binary).toMat(image, WHITE, BLACK);
+                return ImageUtils.mat2Image(image);
+            }
+
+            Mat shape = scope.track(Imgproc.getStructuringElement(currentShape, new Size(currentSize, currentSize)));
+            switch (currentOperation) {
+                case Imgproc.MORPH_ERODE:
+                    Imgproc.erode(image, image, shape, new Point(-1, -1), times, currentBorderType, border);
+                    break;
+                case Imgproc.MORPH_DILATE:
+                    Imgproc.dilate(image, image, shape, new Point(-1, -1), times, currentBorderType, border);
+                    break;
+                case Imgproc.MORPH_OPEN:
+                case Imgproc.MORPH_CLOSE:
+                    Imgproc.morphologyEx(image, image, currentOperation, shape, new Point(-1, -1), times, currentBorderType, border);
+            }
+
+            if (currentBorderType == Core.BORDER_CONSTANT) {
+                FilteringUtils.handleBorder(image, border);
+            }
+
+            return ImageUtils.mat2Image(image);
         }
+    }
 
-        if (currentBorderType == Core.BORDER_CONSTANT) {
-            FilteringUtils.handleBorder(image, border);
+    /**
+     * Przeprowadza wybraną przez użytkownika operację na obrazie binarnym. Wynik jest
+     * taki sam jak wynik operacji z <tt>Imgproc</tt> na obrazie z pikselami czarnymi
+     * i białymi (przy uzupełnianiu brzegu innym niż stała wartość).
+     *
+     * @param image obraz binarny (piksele białe ustawione)
+     * @return obraz po operacji
+     */
+    private BinaryImage applyOperation(BinaryImage image) {
+        BinaryImage result = image;
+        if (currentOperation == Imgproc.MORPH_ERODE || currentOperation == Imgproc.MORPH_OPEN) {
+            result = repeat(result, true);
         }
+        if (currentOperation != Imgproc.MORPH_ERODE) {
+            result = repeat(result, false);
+        }
+        if (currentOperation == Imgproc.MORPH_CLOSE) {
+            result = repeat(result, true);
+        }
+        return result;
+    }
 
-        return ImageUtils.mat2Image(image);
+    private BinaryImage repeat(BinaryImage image, boolean erode) {
+        BinaryImage result = image;
+        for (int i = 0; i < times; i++) {
+            result = erode ? result.erode(currentShape, currentSize) : result.dilate(currentShape, currentSize);
+        }
+        return result;
     }
 
     private BarChart<String, Number> buildHistogram(Image image) {
@@ -0,0 +1,56 @@
+package app;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts bytes held outside the Java heap, so that native usage is visible
+ * even though it never shows up in GC logs.
+ */
+public class NativeMemoryCounter {
+
+    public static final NativeMemoryCounter PIXEL_BUFFERS = new NativeMemoryCounter("pixel buffers");
+
+    /**
+     * OpenCV Mats registered in an open {@link MatScope}.
+     */
+    public static final NativeMemoryCounter MATS = new NativeMemoryCounter("mats");
+
+    /**
+     * Idle OpenCV Mats kept in {@link MatPool} for reuse.
+     */
+    public static final NativeMemoryCounter POOLED_MATS = new NativeMemoryCounter("pooled mats");
+
+    private final String name;
+    private final AtomicLong live = new AtomicLong();
+    private final AtomicLong peak = new AtomicLong();
+
+    NativeMemoryCounter(String name) {
+        this.name = name;
+    }
+
+    void allocated(long bytes) {
+        long current = live.addAndGet(bytes);
+        peak.accumulateAndGet(current, Math::max);
+    }
+
+    void released(long bytes) {
+        live.addAndGet(-bytes);
+    }
+
+    public long liveBytes() {
+        return live.get();
+    }
+
+    public long peakBytes() {
+        return peak.get();
+    }
+
+    public void resetPeak() {
+        peak.set(live.get());
+    }
+
+    @Override
+    public String toString() {
+        return name + ": live=" + liveBytes() + "B, peak=" + peakBytes() + "B";
+    }
+}
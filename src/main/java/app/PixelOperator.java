@@ -0,0 +1,7 @@
+package app;
+
+@FunctionalInterface
+public interface PixelOperator {
+
+    int apply(int x, int y, int argb);
+}
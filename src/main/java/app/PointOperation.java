@@ -0,0 +1,135 @@
+package app;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Point operation compiled into three 256-entry lookup tables, one per colour canal.
+ * Every operation from Lab 2 is a pure function of a single canal value, so the
+ * function is evaluated 3 * 256 times here and the image pass is table lookups only.
+ */
+public class PointOperation {
+
+    private final int[] red;
+    private final int[] green;
+    private final int[] blue;
+
+    private PointOperation(int[] red, int[] green, int[] blue) {
+        this.red = red;
+        this.green = green;
+        this.blue = blue;
+    }
+
+    public static PointOperation of(IntUnaryOperator canalOperation) {
+        int[] table = compile(canalOperation);
+        return new PointOperation(table, table, table);
+    }
+
+    public static PointOperation of(IntUnaryOperator redOperation, IntUnaryOperator greenOperation, IntUnaryOperator blueOperation) {
+        return new PointOperation(compile(redOperation), compile(greenOperation), compile(blueOperation));
+    }
+
+    public static PointOperation identity() {
+        return of(color -> color);
+    }
+
+    public static PointOperation negate() {
+        return of(color -> 255 - color);
+    }
+
+    public static PointOperation threshold(int threshold, int min, int max) {
+        return of(color -> color > threshold ? max : min);
+    }
+
+    public static PointOperation thresholdWithPreservation(int from, int to, int min) {
+        return of(color -> color > from && color < to ? color : min);
+    }
+
+    public static PointOperation levelReduction(int[] p, int[] q) {
+        return of(color -> reduceLevelForColorCanal(color, p, q));
+    }
+
+    public static PointOperation spreadRange(int p1, int p2, int q1, int q2) {
+        return of(color -> spreadRangeSingleColorCanal(color, p1, p2, q1, q2));
+    }
+
+    public static PointOperation stretch(Canals maxValues, Canals minValues) {
+        return of(
+                color -> stretchSingleColorCanal(color, maxValues.red, minValues.red),
+                color -> stretchSingleColorCanal(color, maxValues.green, minValues.green),
+                color -> stretchSingleColorCanal(color, maxValues.blue, minValues.blue));
+    }
+
+    public static PointOperation stretch(Histogram histogram) {
+        return stretch(histogram.maxColorCanalValues(), histogram.minColorValues());
+    }
+
+    /**
+     * Composes the tables: the result maps every value the way applying this
+     * operation and then {@code next} would, in a single lookup.
+     */
+    public PointOperation andThen(PointOperation next) {
+        return new PointOperation(compose(red, next.red), compose(green, next.green), compose(blue, next.blue));
+    }
+
+    /**
+     * Histogram of an image after this operation, derived from the histogram before it
+     * without touching the pixels.
+     */
+    public Histogram transform(Histogram histogram) {
+        return new Histogram(
+                transform(histogram.red(), red),
+                transform(histogram.green(), green),
+                transform(histogram.blue(), blue));
+    }
+
+    public int apply(int argb) {
+        return 0xff000000
+                | (red[(argb >> 16) & 0xff] << 16)
+                | (green[(argb >> 8) & 0xff] << 8)
+                | blue[argb & 0xff];
+    }
+
+    private static int[] compile(IntUnaryOperator canalOperation) {
+        int[] table = new int[256];
+        for (int color = 0; color < 256; color++) {
+            table[color] = canalOperation.applyAsInt(color) & 0xff;
+        }
+        return table;
+    }
+
+    private static int[] compose(int[] first, int[] second) {
+        int[] table = new int[256];
+        for (int color = 0; color < 256; color++) {
+            table[color] = second[first[color]];
+        }
+        return table;
+    }
+
+    private static int[] transform(int[] histogram, int[] table) {
+        int[] output = new int[256];
+        for (int color = 0; color < 256; color++) {
+            output[table[color]] += histogram[color];
+        }
+        return output;
+    }
+
+    private static int spreadRangeSingleColorCanal(int color, int p1, int p2, int q1, int q2) {
+        float ratioP = (float) color / p2;
+        float deltaQ = (float) q2 - q1;
+
+        return Math.round(color <= p2 && color >= p1 ? (q1 + ratioP * deltaQ) : color);
+    }
+
+    private static int reduceLevelForColorCanal(int color, int[] p, int[] q) {
+        for (int i = 0; i < p.length; i++) {
+            if (color < p[i]) {
+                return q[i];
+            }
+        }
+        return q[q.length - 1];
+    }
+
+    private static int stretchSingleColorCanal(int current, int max, int min) {
+        return (current - min) * (255 / max - min);
+    }
+}
@@ -0,0 +1,49 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Chain of point operations executed as a single lookup-table pass. Consecutive
+ * tables are composed up front; steps that depend on the histogram (stretching,
+ * equalization) get the histogram of the intermediate image, which is derived from
+ * the source histogram through the tables composed so far.
+ */
+public class PointOperationPipeline {
+
+    private final List<Function<Histogram, PointOperation>> steps = new ArrayList<>();
+    private final List<Boolean> histogramDependent = new ArrayList<>();
+
+    public PointOperationPipeline then(PointOperation operation) {
+        steps.add(histogram -> operation);
+        histogramDependent.add(false);
+        return this;
+    }
+
+    public PointOperationPipeline thenWithHistogram(Function<Histogram, PointOperation> step) {
+        steps.add(step);
+        histogramDependent.add(true);
+        return this;
+    }
+
+    public PointOperation compile(ImageMap imageMap) {
+        PointOperation composed = PointOperation.identity();
+        Histogram source = null;
+        for (int i = 0; i < steps.size(); i++) {
+            Histogram current = null;
+            if (histogramDependent.get(i)) {
+                if (source == null) {
+                    source = imageMap.histogram();
+                }
+                current = composed.transform(source);
+            }
+            composed = composed.andThen(steps.get(i).apply(current));
+        }
+        return composed;
+    }
+
+    public void applyTo(ImageMap imageMap) {
+        imageMap.pointOperation(compile(imageMap));
+    }
+}
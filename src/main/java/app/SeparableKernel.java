@@ -0,0 +1,146 @@
+package app;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+import org.opencv.core.Mat;
+
+import static org.opencv.core.CvType.CV_32F;
+
+/**
+ * Rozkład maski na dwa jednowymiarowe filtry: maska K (rozmiar n x n) jest
+ * separowalna, jeśli ma rząd 1, czyli K = kolumna * wiersz. Filtracja taką maską
+ * może być wtedy przeprowadzona jako filtracja wierszy, a potem kolumn
+ * (<tt>Imgproc.sepFilter2D</tt>), co zmniejsza liczbę mnożeń na piksel z n² do 2n.
+ * <p>
+ * Rząd maski sprawdzany jest przez rozkład SVD. Same filtry nie są jednak brane
+ * z rozkładu, tylko z wiersza i kolumny maski przechodzących przez jej największy
+ * (co do modułu) element. Dla masek całkowitoliczbowych (np. PREWITT_X, SMOOTH_2)
+ * oba filtry mają wtedy całkowite współczynniki, a dzielnik maski trafia do filtru kolumn.
+ */
+public class SeparableKernel {
+
+    /**
+     * Względna tolerancja, poniżej której druga wartość osobliwa uznawana jest za zero.
+     */
+    private static final double RANK_TOLERANCE = 1e-9;
+
+    /**
+     * Filtr stosowany do wierszy (1 x n).
+     */
+    private final Mat kernelX;
+
+    /**
+     * Filtr stosowany do kolumn (n x 1).
+     */
+    private final Mat kernelY;
+
+    private SeparableKernel(double[] row, double[] column) {
+        this.kernelX = toMat(row, 1, row.length);
+        this.kernelY = toMat(column, column.length, 1);
+    }
+
+    /**
+     * Próbuje rozłożyć maskę na dwa filtry jednowymiarowe.
+     *
+     * @param values  wartości maski (wierszami)
+     * @param size    rozmiar maski
+     * @param divider dzielnik wartości maski
+     * @return rozkład maski lub <tt>null</tt>, jeśli maska nie jest separowalna
+     */
+    public static SeparableKernel of(double[] values, int size, double divider) {
+        double[][] kernel = new double[size][size];
+        int pivotRow = 0;
+        int pivotCol = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                kernel[row][col] = values[row * size + col];
+                if (Math.abs(kernel[row][col]) > Math.abs(kernel[pivotRow][pivotCol])) {
+                    pivotRow = row;
+                    pivotCol = col;
+                }
+            }
+        }
+        if (kernel[pivotRow][pivotCol] == 0 || !hasRankOne(kernel)) {
+            return null;
+        }
+
+        double rowScale = isIntegral(values) ? gcd(kernel[pivotRow]) : Math.abs(kernel[pivotRow][pivotCol]);
+        if (kernel[pivotRow][pivotCol] < 0) {
+            rowScale = -rowScale;
+        }
+        double[] row = new double[size];
+        for (int i = 0; i < size; i++) {
+            row[i] = kernel[pivotRow][i] / rowScale;
+        }
+        double[] column = new double[size];
+        for (int i = 0; i < size; i++) {
+            column[i] = kernel[i][pivotCol] / row[pivotCol] / divider;
+        }
+        return new SeparableKernel(row, column);
+    }
+
+    private static boolean isIntegral(double[] values) {
+        for (double value : values) {
+            if (value != Math.rint(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Największy wspólny dzielnik wartości wiersza - po podzieleniu przez niego
+     * oba filtry maski całkowitoliczbowej mają całkowite współczynniki.
+     */
+    private static double gcd(double[] values) {
+        long gcd = 0;
+        for (double value : values) {
+            long a = Math.abs((long) value);
+            long b = gcd;
+            while (b != 0) {
+                long t = a % b;
+                a = b;
+                b = t;
+            }
+            gcd = a;
+        }
+        return gcd;
+    }
+
+    private static boolean hasRankOne(double[][] kernel) {
+        double[] singularValues = new SingularValueDecomposition(new Array2DRowRealMatrix(kernel, false)).getSingularValues();
+        return singularValues.length < 2 || singularValues[1] <= RANK_TOLERANCE * singularValues[0];
+    }
+
+    private static Mat toMat(double[] values, int rows, int cols) {
+        float[] data = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            data[i] = (float) values[i];
+        }
+        Mat mat = new Mat(rows, cols, CV_32F);
+        mat.put(0, 0, data);
+        return mat;
+    }
+
+    /**
+     * @return filtr stosowany do wierszy (1 x n)
+     */
+    public Mat getKernelX() {
+        return kernelX;
+    }
+
+    /**
+     * @return filtr stosowany do kolumn (n x 1)
+     */
+    public Mat getKernelY() {
+        return kernelY;
+    }
+
+    /**
+     * Zwalnia pamięć filtrów.
+     */
+    public void release() {
+        kernelX.release();
+        kernelY.release();
+    }
+}
@@ -386,22 +386,23 @@ public class SmoothLinearWindow {
      * @return obraz wynikowy.
      */
     private Image applyMask(Mask3x3 mask) {
-        Mat image = ImageUtils.imageToMat(before);
-        applyMask(mask, image);
-
-        return ImageUtils.mat2Image(image);
+        try (MatScope scope = MatScope.open("SmoothLinearWindow")) {
+            Mat image = scope.adopt(ImageUtils.imageToMat(before));
+            Mat result = scope.adopt(FilteringUtils.acquireResult(image));
+            applyMask(mask, image, result);
+            return ImageUtils.mat2Image(result);
+        }
     }
 
     /**
      * Przeprowadza operację filtrowania wybraną maską na podanym obiekcie Mat.
      *
-     * @param mask  maska do operacji
-     * @param image obiekt Mat z obrazem
+     * @param mask   maska do operacji
+     * @param image  obiekt Mat z obrazem
+     * @param result obiekt Mat na wynik operacji
      */
-    private void applyMask(Mask3x3 mask, Mat image) {
-        for (int i = 0; i < times; i++) {
-            FilteringUtils.applyMask(image, mask, currentBorderType, border);
-        }
+    private void applyMask(Mask3x3 mask, Mat image, Mat result) {
+        FilteringUtils.applyMask(image, result, mask, times, currentBorderType, border);
     }
 
     private BarChart<String, Number> buildHistogram(Image image) {
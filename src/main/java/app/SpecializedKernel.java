@@ -0,0 +1,177 @@
+package app;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Inner loop of {@link MaskConvolution} rearranged for one concrete kernel. The
+ * non-zero taps are grouped by weight, so every group is a plain sum of pixels that
+ * is multiplied once at the end; for the common weights 1 and -1 the product is just
+ * an add or a subtract. Zero taps never appear.
+ * <p>
+ * Inside a group the red and blue canals are summed in one int ({@code argb & 0x00ff00ff}
+ * keeps them 16 bits apart), so one add covers two canals. A group therefore holds at
+ * most {@link #MAX_GROUP_TAPS} taps, which keeps each canal's sum below 2^16; larger
+ * groups are split. Rows are processed tap by tap over the whole row, which keeps the
+ * innermost loop free of the tap lookups.
+ * <p>
+ * Kernels are cached by their weights, so refreshing a preview with the same mask
+ * reuses the specialization.
+ */
+final class SpecializedKernel {
+
+    private static final int MAX_GROUP_TAPS = 257;
+    private static final int CACHE_SIZE = 32;
+
+    private static final Map<Key, SpecializedKernel> CACHE = new LinkedHashMap<Key, SpecializedKernel>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, SpecializedKernel> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final int size;
+    private final int radius;
+    private final int[] groupWeights;
+    private final int[] groupEnds;
+    private final int[] taps;
+
+    private SpecializedKernel(int[] weights, int size) {
+        this.size = size;
+        this.radius = size / 2;
+
+        int[] order = new int[weights.length];
+        int nonZero = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] != 0) {
+                order[nonZero++] = i;
+            }
+        }
+        // stable sort of the tap indices by weight keeps the taps of a group in reading order
+        Integer[] sorted = new Integer[nonZero];
+        for (int i = 0; i < nonZero; i++) {
+            sorted[i] = order[i];
+        }
+        Arrays.sort(sorted, (a, b) -> Integer.compare(weights[a], weights[b]));
+
+        int[] groupWeights = new int[nonZero];
+        int[] groupEnds = new int[nonZero];
+        int[] taps = new int[nonZero];
+        int groups = 0;
+        for (int i = 0; i < nonZero; i++) {
+            int weight = weights[sorted[i]];
+            taps[i] = sorted[i];
+            boolean sameGroup = groups > 0 && groupWeights[groups - 1] == weight
+                    && i - (groups > 1 ? groupEnds[groups - 2] : 0) < MAX_GROUP_TAPS;
+            if (!sameGroup) {
+                groupWeights[groups++] = weight;
+            }
+            groupEnds[groups - 1] = i + 1;
+        }
+        this.groupWeights = Arrays.copyOf(groupWeights, groups);
+        this.groupEnds = Arrays.copyOf(groupEnds, groups);
+        this.taps = taps;
+    }
+
+    static SpecializedKernel of(int[] weights, int size) {
+        Key key = new Key(weights, size);
+        synchronized (CACHE) {
+            return CACHE.computeIfAbsent(key, k -> new SpecializedKernel(k.weights, k.size));
+        }
+    }
+
+    /**
+     * Number of weight groups, i.e. multiplications per pixel and canal.
+     */
+    int groups() {
+        return groupWeights.length;
+    }
+
+    /**
+     * Buffer offsets of the taps, in group order, relative to the middle pixel.
+     */
+    int[] offsets(int width) {
+        int[] offsets = new int[taps.length];
+        for (int tap = 0; tap < taps.length; tap++) {
+            offsets[tap] = (taps[tap] / size - radius) * width + taps[tap] % size - radius;
+        }
+        return offsets;
+    }
+
+    /**
+     * Weighted canal sums of the {@code count} pixels starting at buffer index {@code from}.
+     *
+     * @param offsets    {@link #offsets(int)} for the buffer width
+     * @param redBlue    scratch row of at least {@code count} entries
+     * @param greenGroup scratch row of at least {@code count} entries
+     */
+    void sums(IntBuffer src, int from, int count, int[] offsets,
+              int[] red, int[] green, int[] blue, int[] redBlue, int[] greenGroup) {
+        Arrays.fill(red, 0, count, 0);
+        Arrays.fill(green, 0, count, 0);
+        Arrays.fill(blue, 0, count, 0);
+
+        for (int group = 0, tap = 0; group < groupWeights.length; group++) {
+            Arrays.fill(redBlue, 0, count, 0);
+            Arrays.fill(greenGroup, 0, count, 0);
+            for (; tap < groupEnds[group]; tap++) {
+                int start = from + offsets[tap];
+                for (int x = 0; x < count; x++) {
+                    int argb = src.get(start + x);
+                    redBlue[x] += argb & 0x00ff00ff;
+                    greenGroup[x] += argb & 0x0000ff00;
+                }
+            }
+
+            int weight = groupWeights[group];
+            if (weight == 1) {
+                for (int x = 0; x < count; x++) {
+                    red[x] += redBlue[x] >>> 16;
+                    green[x] += greenGroup[x] >>> 8;
+                    blue[x] += redBlue[x] & 0xffff;
+                }
+            } else if (weight == -1) {
+                for (int x = 0; x < count; x++) {
+                    red[x] -= redBlue[x] >>> 16;
+                    green[x] -= greenGroup[x] >>> 8;
+                    blue[x] -= redBlue[x] & 0xffff;
+                }
+            } else {
+                for (int x = 0; x < count; x++) {
+                    red[x] += (redBlue[x] >>> 16) * weight;
+                    green[x] += (greenGroup[x] >>> 8) * weight;
+                    blue[x] += (redBlue[x] & 0xffff) * weight;
+                }
+            }
+        }
+    }
+
+    private static final class Key {
+
+        private final int[] weights;
+        private final int size;
+        private final int hash;
+
+        Key(int[] weights, int size) {
+            this.weights = weights.clone();
+            this.size = size;
+            this.hash = 31 * Arrays.hashCode(weights) + size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return size == other.size && Arrays.equals(weights, other.weights);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
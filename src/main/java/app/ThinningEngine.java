@@ -0,0 +1,367 @@
+package app;
+
+import org.opencv.core.Mat;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ścienianie (szkieletyzacja) obrazu binarnego zapisanego jako {@link BinaryImage}.
+ * <p>
+ * Ośmiu sąsiadów piksela koduje jeden bajt (bit k ustawiony, jeśli sąsiad k jest
+ * obiektem - sąsiedzi numerowani wierszami, z pominięciem środka), a to, czy piksel
+ * jest usuwany, odczytywane jest z tablicy 256 wartości zbudowanej raz z listy wzorców
+ * ({@link BlackObjectPatterns}). Kod składany jest z trzech bitów każdego z trzech
+ * wierszy spakowanego obrazu.
+ * <p>
+ * Wynik każdej iteracji jest identyczny z pierwotnym algorytmem okna
+ * {@link ThinningWindow}: piksel obiektu jest usuwany, jeśli co najmniej jeden z jego
+ * sąsiadów 1, 3, 5 lub 7 należy do tła i do jego sąsiedztwa pasuje któryś ze wzorców.
+ * Wszystkie piksele badane są na obrazie sprzed iteracji, a po iteracji piksele
+ * brzegowe obrazu otrzymują wartość tła.
+ * <p>
+ * Tylko pierwsza iteracja przegląda cały obraz. Pierwszy z warunków (sąsiad 1, 3, 5
+ * lub 7 w tle) sprawdzany jest wtedy naraz dla 64 pikseli słowa, więc kod sąsiedztwa
+ * liczony jest tylko dla pikseli konturu. Piksel, którego sąsiedztwo się nie
+ * zmieniło, nie zostanie usunięty w kolejnej iteracji, skoro nie został usunięty
+ * w poprzedniej - dalsze iteracje badają więc tylko piksele obiektu sąsiadujące
+ * z pikselami zmienionymi w poprzedniej iteracji (front). Koszt iteracji jest
+ * wtedy proporcjonalny do długości konturu, a nie do powierzchni obrazu.
+ */
+class ThinningEngine {
+
+    /**
+     * Indeksy sąsiadów (w masce 3x3) odpowiadające kolejnym bitom kodu sąsiedztwa.
+     */
+    private static final int[] NEIGHBOURS = {0, 1, 2, 3, 5, 6, 7, 8};
+
+    /**
+     * Bity kodu sąsiedztwa odpowiadające sąsiadom 1, 3, 5 i 7 (górny, lewy, prawy, dolny).
+     */
+    private static final int EDGE_NEIGHBOURS = (1 << 1) | (1 << 3) | (1 << 4) | (1 << 6);
+
+    private final int rows;
+    private final int cols;
+
+    /**
+     * Tablica usuwalności: <tt>true</tt> dla kodów sąsiedztwa, przy których piksel obiektu jest usuwany.
+     */
+    private final boolean[] deletable;
+
+    /**
+     * Maska kolumn wewnątrz obrazu (bez pierwszej i ostatniej) dla kolejnych słów wiersza.
+     */
+    private final long[] interior;
+
+    /**
+     * Bieżący obraz.
+     */
+    private final BinaryImage image;
+
+    /**
+     * Indeksy pikseli zmienionych w bieżącej iteracji.
+     */
+    private final IndexList changed = new IndexList();
+
+    /**
+     * Indeksy pikseli badanych w kolejnej iteracji lub <tt>null</tt> przed pierwszą iteracją.
+     */
+    private IndexList frontier;
+
+    /**
+     * Piksele dodane już do frontu.
+     */
+    private final BinaryImage queued;
+
+    /**
+     * Wykonawca, na którym równolegle wybierane są piksele do usunięcia
+     * (<tt>null</tt> - {@link TiledExecutor#global()}).
+     */
+    private TiledExecutor executor;
+
+    /**
+     * Tworzy silnik ścieniania dla obrazu binarnego.
+     *
+     * @param image      obraz binarny (CV_8UC1)
+     * @param patterns   wzorce sąsiedztwa pikseli usuwanych
+     * @param object     poziom jasności obiektu
+     * @param background poziom jasności tła
+     * @throws RuntimeException jeśli któryś z pikseli nie należy ani do obiektu, ani do tła
+     */
+    ThinningEngine(Mat image, List<double[]> patterns, double object, double background) {
+        this.image = BinaryImage.fromMat(image, object, background);
+        if (this.image == null) {
+            throw new RuntimeException("IMAGE IS NOT BINARY!");
+        }
+        this.rows = this.image.rows();
+        this.cols = this.image.cols();
+        this.deletable = deletableTable(patterns, object, background);
+        this.queued = new BinaryImage(rows, cols);
+
+        this.interior = new long[this.image.wordsPerRow()];
+        for (int col = 1; col < cols - 1; col++) {
+            interior[col >>> 6] |= 1L << col;
+        }
+    }
+
+    /**
+     * Buduje tablicę usuwalności: dla każdego z 256 układów sąsiadów piksela obiektu
+     * sprawdza warunek usunięcia pierwotnego algorytmu.
+     *
+     * @param patterns   wzorce (9 wartości wierszami, wartość spoza obiektu i tła oznacza dowolny piksel)
+     * @param object     poziom jasności obiektu
+     * @param background poziom jasności tła
+     * @return tablica usuwalności indeksowana kodem sąsiedztwa
+     */
+    static boolean[] deletableTable(List<double[]> patterns, double object, double background) {
+        boolean[] table = new boolean[256];
+        for (int code = 0; code < 256; code++) {
+            if ((~code & EDGE_NEIGHBOURS) == 0) {
+                continue;
+            }
+            for (double[] pattern : patterns) {
+                if (matches(pattern, code, object, background)) {
+                    table[code] = true;
+                    break;
+                }
+            }
+        }
+        return table;
+    }
+
+    private static boolean matches(double[] pattern, int code, double object, double background) {
+        if (pattern[4] == background) {
+            return false;
+        }
+        for (int bit = 0; bit < NEIGHBOURS.length; bit++) {
+            double expected = pattern[NEIGHBOURS[bit]];
+            boolean isObject = (code & (1 << bit)) != 0;
+            if (expected == object && !isObject || expected == background && isObject) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wybiera piksele do usunięcia na podanym wykonawcy zamiast na {@link TiledExecutor#global()}.
+     *
+     * @param executor wykonawca
+     * @return ten silnik
+     */
+    ThinningEngine withExecutor(TiledExecutor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Przeprowadza jedną iterację ścieniania.
+     * <p>
+     * Wybór pikseli do usunięcia tylko czyta obraz, więc pasy wierszy (lub fragmenty
+     * frontu) przetwarzane są równolegle, a każdy zbiera usuwane piksele we własnej
+     * liście. Obraz zmieniany jest dopiero, gdy wszystkie pasy skończą pracę, więc
+     * wynik jest identyczny z wynikiem sekwencyjnym.
+     *
+     * @return <tt>true</tt>, jeśli usunięto co najmniej jeden piksel
+     */
+    boolean iterate() {
+        TiledExecutor executor = this.executor != null ? this.executor : TiledExecutor.global();
+        changed.clear();
+        if (frontier == null) {
+            executor.forEachBand(cols, rows - 2, (rowFrom, rowTo) -> addChanged(thinRows(rowFrom + 1, rowTo + 1)));
+        } else {
+            executor.forEachBand(1, frontier.size, (from, to) -> addChanged(thinFrontier(from, to)));
+        }
+        boolean removed = changed.size > 0;
+
+        for (int c = 0; c < changed.size; c++) {
+            int i = changed.values[c];
+            image.set(i / cols, i % cols, false);
+        }
+        if (frontier == null) {
+            clearBorder();
+        }
+        buildFrontier();
+        return removed;
+    }
+
+    /**
+     * Wybiera do usunięcia piksele wierszy <tt>[rowFrom, rowTo)</tt>. Kod sąsiedztwa
+     * liczony jest tylko dla pikseli obiektu, których sąsiad 1, 3, 5 lub 7 należy do tła.
+     */
+    private IndexList thinRows(int rowFrom, int rowTo) {
+        IndexList removed = new IndexList();
+        for (int row = rowFrom; row < rowTo; row++) {
+            for (int index = 0; index < interior.length; index++) {
+                long middle = image.word(row, index);
+                if ((middle & interior[index]) == 0) {
+                    continue;
+                }
+                long edgeBackground = ~image.word(row - 1, index)
+                        | ~image.word(row + 1, index)
+                        | ~image.shiftedWord(row, index, -1, true)
+                        | ~image.shiftedWord(row, index, 1, true);
+                for (long candidates = middle & interior[index] & edgeBackground; candidates != 0; candidates &= candidates - 1) {
+                    int col = (index << 6) + Long.numberOfTrailingZeros(candidates);
+                    if (deletable[code(row, col) & 0xff]) {
+                        removed.add(row * cols + col);
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Wybiera do usunięcia piksele frontu o pozycjach <tt>[from, to)</tt>.
+     */
+    private IndexList thinFrontier(int from, int to) {
+        IndexList removed = new IndexList();
+        for (int f = from; f < to; f++) {
+            int i = frontier.values[f];
+            int row = i / cols;
+            int col = i % cols;
+            int code = code(row, col);
+            if (code > 0xff && deletable[code & 0xff]) {
+                removed.add(i);
+            }
+        }
+        return removed;
+    }
+
+    private void addChanged(IndexList removed) {
+        synchronized (changed) {
+            changed.addAll(removed);
+        }
+    }
+
+    /**
+     * Tworzy front kolejnej iteracji: piksele obiektu wewnątrz obrazu sąsiadujące
+     * z pikselami zmienionymi w bieżącej iteracji. Sąsiedzi z jednego wiersza wybierani
+     * są naraz, jako bity słowa obrazu, których nie ma jeszcze w słowie znaczników.
+     */
+    private void buildFrontier() {
+        if (frontier == null) {
+            frontier = new IndexList();
+        }
+        for (int f = 0; f < frontier.size; f++) {
+            int i = frontier.values[f];
+            queued.setWord(i / cols, (i % cols) >>> 6, 0);
+        }
+        frontier.clear();
+        for (int c = 0; c < changed.size; c++) {
+            int i = changed.values[c];
+            int row = i / cols;
+            int col = i % cols;
+            int from = Math.max(1, col - 1);
+            int to = Math.min(cols - 2, col + 1);
+            if (from > to) {
+                continue;
+            }
+            for (int y = Math.max(1, row - 1); y <= Math.min(rows - 2, row + 1); y++) {
+                for (int index = from >>> 6; index <= to >>> 6; index++) {
+                    int low = Math.max(from, index << 6) & 63;
+                    int high = Math.min(to, (index << 6) + 63) & 63;
+                    long columns = (-1L >>> (63 - high)) & (-1L << low);
+                    long queuedWord = queued.word(y, index);
+                    long fresh = image.word(y, index) & ~queuedWord & columns;
+                    if (fresh == 0) {
+                        continue;
+                    }
+                    queued.setWord(y, index, queuedWord | fresh);
+                    for (; fresh != 0; fresh &= fresh - 1) {
+                        frontier.add(y * cols + (index << 6) + Long.numberOfTrailingZeros(fresh));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Kod sąsiedztwa piksela wewnątrz obrazu, odczytany z trzech słów wierszy
+     * powyżej, bieżącego i poniżej (lub dwóch, jeśli sąsiedzi leżą w kolejnym słowie).
+     * Bit 8 kodu to sam piksel.
+     */
+    private int code(int row, int col) {
+        int start = col - 1;
+        int index = start >>> 6;
+        int shift = start & 63;
+        long above = image.word(row - 1, index) >>> shift;
+        long middle = image.word(row, index) >>> shift;
+        long below = image.word(row + 1, index) >>> shift;
+        if (shift > 61) {
+            above |= image.word(row - 1, index + 1) << (64 - shift);
+            middle |= image.word(row, index + 1) << (64 - shift);
+            below |= image.word(row + 1, index + 1) << (64 - shift);
+        }
+        return (int) (above & 7)
+                | (int) (middle & 1) << 3
+                | (int) (middle >>> 2 & 1) << 4
+                | (int) (below & 7) << 5
+                | (int) (middle >>> 1 & 1) << 8;
+    }
+
+    /**
+     * Nadaje pikselom brzegowym wartość tła. Zmienione piksele brzegowe trafiają do listy
+     * zmienionych pikseli (nie liczą się jednak jako usunięte).
+     */
+    private void clearBorder() {
+        for (int col = 0; col < cols; col++) {
+            clear(0, col);
+            clear(rows - 1, col);
+        }
+        for (int row = 1; row < rows - 1; row++) {
+            clear(row, 0);
+            clear(row, cols - 1);
+        }
+    }
+
+    private void clear(int row, int col) {
+        if (image.get(row, col)) {
+            image.set(row, col, false);
+            changed.add(row * cols + col);
+        }
+    }
+
+    /**
+     * @return kopia bieżącego obrazu
+     */
+    BinaryImage snapshot() {
+        return image.copy();
+    }
+
+    /**
+     * @return indeksy pikseli zmienionych w ostatniej iteracji (usuniętych oraz brzegowych)
+     */
+    int[] changedPixels() {
+        return Arrays.copyOf(changed.values, changed.size);
+    }
+
+    /**
+     * Lista indeksów pikseli.
+     */
+    private static final class IndexList {
+
+        private int[] values = new int[64];
+        private int size;
+
+        void add(int index) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = index;
+        }
+
+        void addAll(IndexList other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
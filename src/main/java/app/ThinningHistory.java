@@ -0,0 +1,114 @@
+package app;
+
+import javafx.scene.image.Image;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Historia kolejnych kroków ścieniania. Zamiast pełnego obrazu dla każdego kroku
+ * przechowywany jest obraz początkowy i, dla każdego kroku, lista indeksów pikseli
+ * obiektu, które w nim zmieniły się w tło (ścienianie tylko usuwa piksele obiektu).
+ * Obraz danego kroku odtwarzany jest na żądanie, a kilka ostatnio oglądanych kroków
+ * trzymanych jest w pamięci podręcznej.
+ */
+class ThinningHistory {
+
+    /**
+     * Liczba obrazów kroków przechowywanych w pamięci podręcznej.
+     */
+    private static final int CACHED_STEPS = 4;
+
+    private final double object;
+    private final double background;
+
+    /**
+     * Obraz przed pierwszym krokiem.
+     */
+    private final BinaryImage base;
+
+    /**
+     * Liczba pikseli obiektu przed pierwszym krokiem.
+     */
+    private final long basePixels;
+
+    /**
+     * Indeksy pikseli usuniętych w kolejnych krokach.
+     */
+    private final List<int[]> removed = new ArrayList<>();
+
+    private final Map<Integer, Image> cache = new LinkedHashMap<Integer, Image>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Image> eldest) {
+            return size() > CACHED_STEPS;
+        }
+    };
+
+    /**
+     * @param base       obraz przed pierwszym krokiem
+     * @param object     poziom jasności obiektu
+     * @param background poziom jasności tła
+     */
+    ThinningHistory(BinaryImage base, double object, double background) {
+        this.base = base;
+        this.basePixels = base.count();
+        this.object = object;
+        this.background = background;
+    }
+
+    /**
+     * Dodaje kolejny krok.
+     *
+     * @param removedPixels indeksy pikseli usuniętych w tym kroku
+     */
+    void add(int[] removedPixels) {
+        removed.add(removedPixels);
+    }
+
+    /**
+     * @return liczba kroków
+     */
+    int size() {
+        return removed.size();
+    }
+
+    /**
+     * @param step numer kroku (od 0)
+     * @return liczba pikseli obiektu po kroku
+     */
+    long objectPixels(int step) {
+        long pixels = basePixels;
+        for (int s = 0; s <= step; s++) {
+            pixels -= removed.get(s).length;
+        }
+        return pixels;
+    }
+
+    /**
+     * Zwraca obraz po podanym kroku, odtwarzając go, jeśli nie ma go w pamięci podręcznej.
+     *
+     * @param step numer kroku (od 0)
+     * @return obraz po kroku
+     */
+    Image get(int step) {
+        Image image = cache.get(step);
+        if (image == null) {
+            image = reconstruct(step);
+            cache.put(step, image);
+        }
+        return image;
+    }
+
+    private Image reconstruct(int step) {
+        BinaryImage image = base.copy();
+        int cols = image.cols();
+        for (int s = 0; s <= step; s++) {
+            for (int i : removed.get(s)) {
+                image.set(i / cols, i % cols, false);
+            }
+        }
+        return image.toImage(object, background);
+    }
+}
@@ -14,11 +14,8 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
-import org.opencv.core.Core;
 import org.opencv.core.Mat;
-import org.opencv.core.Scalar;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -28,7 +25,6 @@ public class ThinningWindow {
 
     private static final double WHITE = 255;
     private static final double BLACK = 0;
-    private static final double ANY = 150;
 
     /**
      * Wartości wskazujące rodzaj opracji na pikselach brzegowych.
@@ -64,6 +60,7 @@ public class ThinningWindow {
     private HBox hBox;
     private Slider stepSlider;
     private Label stepValue;
+    private Label objectPixels;
 
     /**
      * Obrazy przed i po operacji.
@@ -76,16 +73,6 @@ public class ThinningWindow {
      */
     private int step;
 
-    /**
-     * Aktualnie wybrana przez użytkownika operacja na pikselach brzegowych.
-     */
-    private int currentBorderType;
-
-    /**
-     * Wartość pikseli brzegowych (jeśli wybrana stała wartość)
-     */
-    private Scalar border;
-
     /**
      * Początkowe wartości poziomu jasności dla obiektu i tła.
      */
@@ -98,18 +85,15 @@ public class ThinningWindow {
     private List<double[]> patterns;
 
     /**
-     * Lista obrazów w kolejnych krokach skieletyzacji.
+     * Historia kolejnych kroków skieletyzacji.
      */
-    List<Image> stepImages;
+    private ThinningHistory history;
 
     public ThinningWindow(Image image, App app) {
         this.app = app;
         before = ImageUtils.binarize(image);
-        border = new Scalar(255, 255, 255, 255);
         patterns = BlackObjectPatterns.getPATTERNS();
 
-        currentBorderType = Core.BORDER_CONSTANT;
-
         createStepSlider();
         createBeforeImageView();
         createAfterImageView();
@@ -134,7 +118,7 @@ public class ThinningWindow {
         buttonsHbox.setAlignment(Pos.CENTER);
         HBox stepSliderHBox = new HBox(stepSlider, stepValue);
         stepSliderHBox.setAlignment(Pos.CENTER);
-        VBox buttonsStepVbox = new VBox(stepSliderHBox, buttonsHbox);
+        VBox buttonsStepVbox = new VBox(stepSliderHBox, objectPixels, buttonsHbox);
         buttonsStepVbox.setAlignment(Pos.CENTER);
         buttonsStepVbox.setSpacing(15);
 
@@ -158,10 +142,6 @@ public class ThinningWindow {
         background = WHITE;
         patterns = BlackObjectPatterns.getPATTERNS();
 
-
-        currentBorderType = Core.BORDER_CONSTANT;
-        border = new Scalar(255, 255, 255, 255);
-
         stage = new Stage();
         stage.initModality(Modality.APPLICATION_MODAL);
 
@@ -172,8 +152,8 @@ public class ThinningWindow {
     }
 
     private void saveAndClose() {
-        if (stepImages != null && stepImages.size() > step) {
-            this.app.updateImage(stepImages.get(step));
+        if (history != null && history.size() > step) {
+            this.app.updateImage(history.get(step));
         } else {
             this.app.updateImage(after);
         }
@@ -190,12 +170,14 @@ public class ThinningWindow {
         stepSlider.setDisable(true);
         stepValue = new Label("1");
         stepValue.setPrefWidth(30);
+        objectPixels = new Label();
         stepSlider.valueProperty().addListener((observable, oldValue, newValue) -> {
             stepValue.setText(String.valueOf(newValue.intValue()));
             step = newValue.intValue() - 1;
 
-            if (afterImageView != null && stepImages.size() > step) {
-                afterImageView.setImage(stepImages.get(step));
+            if (afterImageView != null && history != null && history.size() > step) {
+                afterImageView.setImage(history.get(step));
+                showObjectPixels();
             }
         });
     }
@@ -262,132 +244,51 @@ public class ThinningWindow {
     }
 
     private Image applyThinning() {
-        stepImages = new ArrayList<>();
-        Mat image = ImageUtils.imageToMat(before);
-        ImageUtils.binarize(image);
+        try (MatScope scope = MatScope.open("ThinningWindow")) {
+            Mat image = scope.adopt(ImageUtils.imageToMat(before));
+            ImageUtils.binarize(image);
 
-        applyThinning(image);
-        refreshSlider();
+            history = applyThinning(image);
+            refreshSlider();
 
-        return ImageUtils.mat2Image(image);
+            return history.get(history.size() - 1);
+        }
     }
 
-
-    private void applyThinning(Mat image) {
-        Mat copy = new Mat();
-        image.copyTo(copy);
+    /**
+     * Przeprowadza ścienianie obrazu aż do chwili, gdy żaden piksel nie zostanie
+     * usunięty (zob. {@link ThinningEngine}), zapisując zmiany z każdej iteracji.
+     *
+     * @param image obraz binarny
+     * @return historia kolejnych kroków
+     */
+    private ThinningHistory applyThinning(Mat image) {
+        ThinningEngine engine = new ThinningEngine(image, patterns, object, background);
+        ThinningHistory history = new ThinningHistory(engine.snapshot(), object, background);
 
         boolean remain = true;
         while (remain) {
-            remain = false;
-            for (int j = 1; j < 8; j += 2) {
-                for (int col = 1; col < image.cols() - 1; col++) {
-                    for (int row = 1; row < image.rows() - 1; row++) {
-                        double p = image.get(row, col)[0];
-                        if (p != BLACK && p != WHITE) {
-                            throw new RuntimeException("IMAGE IS NOT BINARY!");
-                        }
-
-                        double jNeighbour = getNeighbour(image, j, col, row);
-                        if (p == object && jNeighbour == background) {
-                            if (!anyPatternMatches(image, col, row)) {
-                                copy.put(row, col, object);
-                            } else {
-                                copy.put(row, col, background);
-                                remain = true;
-                            }
-                        }
-                    }
-                }
-            }
-
-            FilteringUtils.handleBorder(copy, border);
-            copy.copyTo(image);
-            stepImages.add(ImageUtils.mat2Image(image));
+            remain = engine.iterate();
+            history.add(engine.changedPixels());
         }
+        return history;
     }
 
     /**
      * Odświeża slider do przesuwania kroków szkieletyzacji.
      */
     private void refreshSlider() {
-        stepSlider.setMax(stepImages.size());
-        stepSlider.setValue(stepImages.size());
+        stepSlider.setMax(history.size());
+        stepSlider.setValue(history.size());
         stepSlider.setDisable(false);
+        showObjectPixels();
     }
 
     /**
-     * Sprawdza, czy któryś z wzorców pasuje do sąsiedztwa obecnego piksela.
-     *
-     * @param image obraz
-     * @param col   kolumna piksela
-     * @param row   wiersz piksela
-     * @return <tt>true</tt> jeśli co najmniej jeden wzorzec pasuje.
-     */
-    private boolean anyPatternMatches(Mat image, int col, int row) {
-        for (double[] pattern : patterns) {
-            if (patternMatches(pattern, image, col, row)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    /**
-     * Sprawdza, czy wzorzec pasuje do sąsiedztwa piksela
-     *
-     * @param pattern wzorzec do sprawdzenia
-     * @param image   obraz
-     * @param col     kolumna piksela
-     * @param row     wiersz piksela
-     * @return <tt>true</tt> jeśli wzorzec pasuje.
-     */
-    private boolean patternMatches(double[] pattern, Mat image, int col, int row) {
-        for (int i = 0; i < 9; i++) {
-            if (pattern[i] == ANY) continue;
-            double value = getNeighbour(image, i, col, row);
-
-            if (pattern[i] != value) {
-                return false;
-            }
-        }
-
-        return true;
-    }
-
-    /**
-     * Pobiera wartość sąsiedniego piksela o podanym indeksie.
-     *
-     * @param image          obraz
-     * @param neighbourIndex indeks sąsiada
-     * @param col            kolumna piksela
-     * @param row            wiersz piksela
-     * @return wartość sąsiedniego piksela
+     * Wyświetla liczbę pikseli obiektu po wybranym kroku.
      */
-    private double getNeighbour(Mat image, int neighbourIndex, int col, int row) {
-        switch (neighbourIndex) {
-            case 0:
-                return image.get(row - 1, col - 1)[0];
-            case 1:
-                return image.get(row - 1, col)[0];
-            case 2:
-                return image.get(row - 1, col + 1)[0];
-            case 3:
-                return image.get(row, col - 1)[0];
-            case 4:
-                return image.get(row, col)[0];
-            case 5:
-                return image.get(row, col + 1)[0];
-            case 6:
-                return image.get(row + 1, col - 1)[0];
-            case 7:
-                return image.get(row + 1, col)[0];
-            case 8:
-                return image.get(row + 1, col + 1)[0];
-        }
-
-        throw new IllegalArgumentException();
+    private void showObjectPixels() {
+        objectPixels.setText("Piksele obiektu: " + history.objectPixels(Math.min(step, history.size() - 1)));
     }
 
     private BarChart<String, Number> buildHistogram(Image image) {
@@ -0,0 +1,124 @@
+package app;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs image passes in parallel over tiles of whole rows. A band is split in halves
+ * until it holds at most {@link #TILE_PIXELS} pixels, so that a tile of the source and
+ * of the target fit in the core's cache together. Neighbourhood passes read the rows
+ * directly above and below their tile (the halo) straight from the source buffer,
+ * which no pass writes to, so tiles never have to be stitched back together.
+ * <p>
+ * The global executor is used unless an operation is given its own, see
+ * {@link ImageMap#withExecutor(TiledExecutor)} and {@link ImageOperations#ImageOperations(TiledExecutor)}.
+ * Its parallelism is read from the {@code app.parallelism} system property and
+ * defaults to the number of available processors; a parallelism of 1 runs every
+ * pass on the calling thread.
+ */
+public class TiledExecutor {
+
+    static final int TILE_PIXELS = Integer.getInteger("app.tilePixels", 1 << 16);
+
+    private static final Map<Integer, TiledExecutor> EXECUTORS = new ConcurrentHashMap<>();
+
+    private static volatile TiledExecutor global = of(Integer.getInteger("app.parallelism", Runtime.getRuntime().availableProcessors()));
+
+    private final int parallelism;
+    private final ForkJoinPool pool;
+
+    private TiledExecutor(int parallelism) {
+        this.parallelism = parallelism;
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    /**
+     * Executor with the given number of worker threads. Executors are shared, so
+     * asking for the same parallelism twice does not start new threads.
+     */
+    public static TiledExecutor of(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        return EXECUTORS.computeIfAbsent(parallelism, TiledExecutor::new);
+    }
+
+    public static TiledExecutor sequential() {
+        return of(1);
+    }
+
+    public static TiledExecutor global() {
+        return global;
+    }
+
+    public static void setGlobalParallelism(int parallelism) {
+        global = of(parallelism);
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Calls {@code band} for row ranges {@code [rowFrom, rowTo)} covering {@code [0, height)}.
+     * Bands may run concurrently and must only write pixels in their own rows.
+     */
+    public void forEachBand(int width, int height, RowBand band) {
+        if (pool == null || (long) width * height <= TILE_PIXELS) {
+            band.apply(0, height);
+            return;
+        }
+        pool.invoke(new BandTask(band, width, 0, height));
+    }
+
+    /**
+     * Runs a task that splits itself (e.g. {@link HistogramTask}) on this executor's pool,
+     * or directly on the calling thread when the executor is sequential.
+     */
+    public <T> T invoke(ForkJoinTask<T> task) {
+        if (pool == null) {
+            return task.invoke();
+        }
+        return pool.invoke(task);
+    }
+
+    static boolean shouldSplit(int width, int rows) {
+        return rows > 1 && (long) rows * width > TILE_PIXELS;
+    }
+
+    @FunctionalInterface
+    public interface RowBand {
+        void apply(int rowFrom, int rowTo);
+    }
+
+    private static class BandTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RowBand band;
+        private final int width;
+        private final int rowFrom;
+        private final int rowTo;
+
+        BandTask(RowBand band, int width, int rowFrom, int rowTo) {
+            this.band = band;
+            this.width = width;
+            this.rowFrom = rowFrom;
+            this.rowTo = rowTo;
+        }
+
+        @Override
+        protected void compute() {
+            int rows = rowTo - rowFrom;
+            if (shouldSplit(width, rows)) {
+                int middle = rowFrom + rows / 2;
+                invokeAll(new BandTask(band, width, rowFrom, middle), new BandTask(band, width, middle, rowTo));
+                return;
+            }
+            band.apply(rowFrom, rowTo);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package app;
+
+import nu.pattern.OpenCV;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BinaryImageTest {
+
+    private static final double WHITE = 255;
+    private static final double BLACK = 0;
+
+    private static final int[] OPERATIONS = {Imgproc.MORPH_ERODE, Imgproc.MORPH_DILATE, Imgproc.MORPH_OPEN, Imgproc.MORPH_CLOSE};
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    @Test
+    public void morphologyMatchesImgproc() {
+        for (int t = 0; t < 3; t++) {
+            Mat image = randomBinaryImage(97 + t * 31, 150 + t * 17, t);
+            BinaryImage binary = BinaryImage.fromMat(image, WHITE, BLACK);
+            for (int shape : new int[]{Imgproc.MORPH_RECT, Imgproc.MORPH_CROSS}) {
+                for (int size : new int[]{3, 5, 7}) {
+                    for (int borderType : new int[]{Core.BORDER_DEFAULT, Core.BORDER_REPLICATE}) {
+                        for (int operation : OPERATIONS) {
+                            for (int times = 1; times <= 2; times++) {
+                                Mat expected = image.clone();
+                                Mat element = Imgproc.getStructuringElement(shape, new Size(size, size));
+                                Imgproc.morphologyEx(expected, expected, operation, element, new Point(-1, -1), times, borderType, new Scalar(0, 0, 0, 255));
+                                Mat actual = image.clone();
+                                apply(binary, operation, shape, size, times).toMat(actual, WHITE, BLACK);
+
+                                assertArrayEquals("shape " + shape + " size " + size + " border " + borderType
+                                        + " operation " + operation + " x" + times, pixels(expected), pixels(actual));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void convertsFromAndToMat() {
+        Mat grey = new Mat();
+        Mat image = randomBinaryImage(40, 130, 3);
+        Imgproc.cvtColor(image, grey, Imgproc.COLOR_BGRA2GRAY);
+        BinaryImage binary = BinaryImage.fromMat(image, WHITE, BLACK);
+
+        assertEquals(Core.countNonZero(grey), binary.count());
+        assertEquals(binary, BinaryImage.fromMat(grey, WHITE, BLACK));
+        Mat copy = new Mat(image.size(), image.type());
+        binary.toMat(copy, WHITE, BLACK);
+        assertArrayEquals(pixels(image), pixels(copy));
+    }
+
+    @Test
+    public void rejectsImagesThatAreNotBinary() {
+        Mat image = randomBinaryImage(20, 70, 4);
+        image.put(11, 65, 10, 10, 10, 255);
+
+        assertNull(BinaryImage.fromMat(image, WHITE, BLACK));
+        assertNull(BinaryImage.fromMat(new Mat(10, 10, CvType.CV_8UC4, new Scalar(10, 10, 10, 255)), WHITE, BLACK));
+    }
+
+    /**
+     * Tak jak okno {@link MorphologyWindow}: otwarcie to n erozji i n dylacji, zamknięcie - odwrotnie.
+     */
+    private static BinaryImage apply(BinaryImage image, int operation, int shape, int size, int times) {
+        BinaryImage result = image;
+        if (operation == Imgproc.MORPH_ERODE || operation == Imgproc.MORPH_OPEN) {
+            result = repeat(result, true, shape, size, times);
+        }
+        if (operation != Imgproc.MORPH_ERODE) {
+            result = repeat(result, false, shape, size, times);
+        }
+        if (operation == Imgproc.MORPH_CLOSE) {
+            result = repeat(result, true, shape, size, times);
+        }
+        return result;
+    }
+
+    private static BinaryImage repeat(BinaryImage image, boolean erode, int shape, int size, int times) {
+        BinaryImage result = image;
+        for (int i = 0; i < times; i++) {
+            result = erode ? result.erode(shape, size) : result.dilate(shape, size);
+        }
+        return result;
+    }
+
+    /**
+     * Czarno-biały obraz CV_8UC4 z losowymi plamami.
+     */
+    private static Mat randomBinaryImage(int rows, int cols, int seed) {
+        Mat grey = new Mat(rows, cols, CvType.CV_8UC1);
+        Core.setRNGSeed(seed);
+        Core.randu(grey, 0, 256);
+        Imgproc.GaussianBlur(grey, grey, new Size(5, 5), 0);
+        Imgproc.threshold(grey, grey, 128, 255, Imgproc.THRESH_BINARY);
+        Mat image = new Mat();
+        Imgproc.cvtColor(grey, image, Imgproc.COLOR_GRAY2BGRA);
+        return image;
+    }
+
+    private static byte[] pixels(Mat image) {
+        byte[] values = new byte[(int) (image.total() * image.channels())];
+        image.get(0, 0, values);
+        return values;
+    }
+}
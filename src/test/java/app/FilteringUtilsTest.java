@@ -0,0 +1,124 @@
+package app;
+
+import nu.pattern.OpenCV;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+
+import static app.TestMats.assertClose;
+import static app.TestMats.randomImage;
+
+public class FilteringUtilsTest {
+
+    private static final int[] BORDER_TYPES = {Core.BORDER_DEFAULT, Core.BORDER_REPLICATE, Core.BORDER_CONSTANT};
+
+    private static final Scalar[] BORDERS = {null, new Scalar(255, 255, 255, 255)};
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    @Test
+    public void repeatedMaskMatchesRepeatedPasses() {
+        Mat image = randomImage(120, 90);
+        IMask[] masks = {LinearFilters.SMOOTH_2, LinearFilters.PREWITT_X, LinearFilters.SHARPEN_1, LinearFilters.SMOOTH_1,
+                new Mask3x3("ASYMMETRIC", false, 0, 1, 2, -1, 3, 0, 0, 0, 1)};
+        for (int m = 0; m < masks.length; m++) {
+            IMask mask = masks[m];
+            for (int borderType : BORDER_TYPES) {
+                for (Scalar border : BORDERS) {
+                    for (int times : new int[]{2, 3, 5}) {
+                        Mat expected = image;
+                        for (int i = 0; i < times; i++) {
+                            Mat output = FilteringUtils.acquireResult(image);
+                            FilteringUtils.applyMask(expected, output, mask, borderType, border);
+                            expected = output;
+                        }
+                        Mat actual = FilteringUtils.acquireResult(image);
+                        FilteringUtils.applyMask(image, actual, mask, (double) times, borderType, border);
+
+                        assertClose("mask " + m + " border " + borderType + "/" + border + " x" + times, expected, actual);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void composedChainMatchesSequentialFilters() {
+        Mat image = randomImage(120, 90);
+        IMask asymmetric = new Mask3x3("ASYMMETRIC", false, 0, 1, 2, -1, 3, 0, 0, 0, 1);
+        IMask sparse = new MaskNxN("SPARSE", 5, 7,
+                1, 0, 0, 0, 2,
+                0, 1, 0, 0, 0,
+                0, 0, 3, 0, 0,
+                0, 0, 0, 1, 0,
+                -1, 0, 0, 0, 1);
+        IMask[][] chains = {
+                {LinearFilters.SMOOTH_2, LinearFilters.PREWITT_X},
+                {asymmetric, LinearFilters.SHARPEN_1, asymmetric},
+                {LinearFilters.PREWITT_X, asymmetric},
+                {asymmetric, sparse}
+        };
+        for (int c = 0; c < chains.length; c++) {
+            for (int borderType : BORDER_TYPES) {
+                for (Scalar border : BORDERS) {
+                    for (int times = 1; times <= 3; times++) {
+                        Mat expected = sequential(image, chains[c], times, borderType, border);
+                        Mat actual = FilteringUtils.acquireResult(image);
+                        FilteringUtils.applyMasks(image, actual, chains[c], (double) times, borderType, border);
+
+                        assertClose("chain " + c + " border " + borderType + "/" + border + " x" + times, expected, actual);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void composedPassWorksInPlace() {
+        IMask asymmetric = new Mask3x3("ASYMMETRIC", false, 0, 1, 2, -1, 3, 0, 0, 0, 1);
+        Mat image = new Mat();
+        randomImage(64, 48).convertTo(image, CvType.CV_32FC4);
+        Mat expected = sequential(image, new IMask[]{asymmetric, LinearFilters.SHARPEN_1}, 1, Core.BORDER_DEFAULT, null);
+        FilteringUtils.applyMasks(image, asymmetric, LinearFilters.SHARPEN_1, Core.BORDER_DEFAULT, null);
+
+        assertClose("in place", expected, image);
+    }
+
+    @Test
+    public void combinedMaskMatchesBothFilters() {
+        Mat image = randomImage(60, 50);
+        Mask3x3 first = new Mask3x3("FIRST", false, 0, 1, 2, -1, 3, 0, 0, 0, 1);
+        Mask3x3 second = new Mask3x3("SECOND", false, 1, 0, 0, 0, 2, 0, 0, 0, -1);
+        Mat expected = sequential(image, new IMask[]{first, second}, 1, Core.BORDER_REPLICATE, null);
+        Mat actual = FilteringUtils.acquireResult(image);
+        FilteringUtils.applyMask(image, actual, MaskUtils.combineMasks(first, second), Core.BORDER_REPLICATE, null);
+
+        // przy krawędzi złożona maska widzi inne rozszerzenie obrazu niż dwie kolejne filtracje
+        Rect interior = new Rect(2, 2, image.cols() - 4, image.rows() - 4);
+        assertClose("combined", expected.submat(interior), actual.submat(interior));
+    }
+
+    /**
+     * Kolejne filtracje podanymi maskami, powtórzone {@code times} razy - wynik odniesienia
+     * dla przebiegu złożonego. Ramka jest rysowana po każdym powtórzeniu, tak jak w oknach.
+     */
+    private static Mat sequential(Mat image, IMask[] masks, int times, int borderType, Scalar border) {
+        Mat input = image;
+        for (int t = 0; t < times; t++) {
+            for (IMask mask : masks) {
+                Mat output = FilteringUtils.acquireResult(image);
+                FilteringUtils.applyMask(input, output, mask, borderType, null);
+                input = output;
+            }
+            FilteringUtils.handleBorder(input, border);
+        }
+        return input;
+    }
+}
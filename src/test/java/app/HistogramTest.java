@@ -0,0 +1,88 @@
+package app;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static app.TestImages.assertSamePixels;
+import static app.TestImages.copy;
+import static app.TestImages.randomImage;
+import static org.junit.Assert.assertArrayEquals;
+
+public class HistogramTest {
+
+    @Test
+    public void equalizationTableMatchesPerPixelFormula() {
+        Random random = new Random(1);
+        ImageMap dark = new ImageMap(45, 33);
+        for (int y = 0; y < 33; y++) {
+            for (int x = 0; x < 45; x++) {
+                dark.putArgb(x, y, Canals.pack(random.nextInt(80), 1 + random.nextInt(40), 30 + random.nextInt(200)));
+            }
+        }
+        for (ImageMap source : new ImageMap[]{randomImage(random, 80, 60), dark}) {
+            int[][] counts = count(source);
+            ImageMap expected = copy(source);
+            expected.pointOperation((x, y, argb) -> Canals.pack(
+                    equalize(counts[0], Canals.red(argb)),
+                    equalize(counts[1], Canals.green(argb)),
+                    equalize(counts[2], Canals.blue(argb))));
+            ImageMap actual = copy(source);
+            new PointOperationPipeline().thenWithHistogram(Histogram::equalization).applyTo(actual);
+
+            assertSamePixels(source.width() + "x" + source.height(), expected, actual);
+        }
+    }
+
+    @Test
+    public void stripedCountMatchesPixelByPixelCount() {
+        Random random = new Random(2);
+        // the larger images are above TiledExecutor.TILE_PIXELS, so on a parallel executor their rows are split
+        for (int[] size : new int[][]{{1, 1}, {7, 3}, {300, 250}, {1201, 317}}) {
+            ImageMap image = randomImage(random, size[0], size[1]);
+            int[][] expected = count(image);
+            for (int parallelism : new int[]{1, 4}) {
+                Histogram histogram = image.withExecutor(TiledExecutor.of(parallelism)).histogram();
+
+                assertArrayEquals("red x" + parallelism, expected[0], histogram.red());
+                assertArrayEquals("green x" + parallelism, expected[1], histogram.green());
+                assertArrayEquals("blue x" + parallelism, expected[2], histogram.blue());
+            }
+        }
+    }
+
+    /**
+     * Per-pixel equalization as computed before the lookup tables: the share of pixels
+     * below the value, shifted by the first non-empty bin.
+     */
+    private static int equalize(int[] canal, int color) {
+        int below = 0;
+        int sum = 0;
+        int firstNotZero = -1;
+        for (int i = 0; i < canal.length; i++) {
+            if (i < color) {
+                below += canal[i];
+            }
+            if (firstNotZero < 0 && canal[i] != 0) {
+                firstNotZero = i;
+            }
+            sum += canal[i];
+        }
+        float distribution = (float) below / sum;
+        float firstNotZeroDistribution = firstNotZero;
+        return Math.round((distribution - firstNotZeroDistribution / (1 - firstNotZeroDistribution)) * (255 - 1));
+    }
+
+    static int[][] count(ImageMap image) {
+        int[][] counts = new int[3][256];
+        for (int y = 0; y < image.height(); y++) {
+            for (int x = 0; x < image.width(); x++) {
+                int argb = image.getArgb(x, y);
+                counts[0][Canals.red(argb)]++;
+                counts[1][Canals.green(argb)]++;
+                counts[2][Canals.blue(argb)]++;
+            }
+        }
+        return counts;
+    }
+}
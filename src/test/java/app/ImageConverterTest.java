@@ -0,0 +1,61 @@
+package app;
+
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static app.TestImages.randomImage;
+import static org.junit.Assert.assertEquals;
+
+public class ImageConverterTest {
+
+    private final ImageConverter imageConverter = new ImageConverter();
+
+    @Test
+    public void bulkReadMatchesPixelByPixelRead() {
+        Random random = new Random(1);
+        WritableImage image = new WritableImage(37, 23);
+        PixelWriter writer = image.getPixelWriter();
+        for (int y = 0; y < 23; y++) {
+            for (int x = 0; x < 37; x++) {
+                writer.setArgb(x, y, random.nextInt());
+            }
+        }
+        PixelReader reader = image.getPixelReader();
+        try (ImageMap imageMap = imageConverter.toImageMap(image)) {
+            for (int y = 0; y < 23; y++) {
+                for (int x = 0; x < 37; x++) {
+                    int argb = reader.getArgb(x, y);
+                    assertEquals(x + "," + y, Canals.pack(Canals.red(argb), Canals.green(argb), Canals.blue(argb)), imageMap.getArgb(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void bulkWriteMatchesBufferedImagePath() {
+        ImageMap imageMap = randomImage(new Random(2), 41, 19);
+        BufferedImage buffered = new BufferedImage(41, 19, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 19; y++) {
+            for (int x = 0; x < 41; x++) {
+                buffered.setRGB(x, y, imageMap.getArgb(x, y));
+            }
+        }
+        PixelReader expected = SwingFXUtils.toFXImage(buffered, null).getPixelReader();
+        Image image = imageConverter.toImage(imageMap);
+
+        assertEquals(41, (int) image.getWidth());
+        assertEquals(19, (int) image.getHeight());
+        for (int y = 0; y < 19; y++) {
+            for (int x = 0; x < 41; x++) {
+                assertEquals(x + "," + y, expected.getArgb(x, y), image.getPixelReader().getArgb(x, y));
+            }
+        }
+    }
+}
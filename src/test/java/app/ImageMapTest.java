@@ -0,0 +1,62 @@
+package app;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static app.TestImages.assertSamePixels;
+import static app.TestImages.copy;
+import static app.TestImages.randomImage;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ImageMapTest {
+
+    @Test
+    public void offHeapMapsKeepPixelsLikeHeapMap() throws IOException {
+        ImageMap source = randomImage(new Random(1), 77, 45);
+        ImageMap expected = copy(source);
+        expected.pointOperation(PointOperation.negate());
+        try (ImageMap direct = ImageMap.offHeap(77, 45); ImageMap mapped = ImageMap.mapped(77, 45)) {
+            for (ImageMap image : new ImageMap[]{direct, mapped}) {
+                assertTrue(image.isOffHeap());
+                for (int y = 0; y < 45; y++) {
+                    for (int x = 0; x < 77; x++) {
+                        image.putArgb(x, y, source.getArgb(x, y));
+                    }
+                }
+                assertSamePixels("written", source, image);
+                image.pointOperation(PointOperation.negate());
+                assertSamePixels("negated", expected, image);
+            }
+        }
+    }
+
+    @Test
+    public void mappedFileIsRemovedOnClose() throws IOException {
+        ImageMap image = ImageMap.mapped(31, 7);
+        Path file = image.mappedFile();
+        assertTrue(Files.exists(file));
+        assertEquals(31 * 7 * 4, Files.size(file));
+
+        image.close();
+        assertTrue(image.isClosed());
+        assertFalse(Files.exists(file));
+        image.close();
+    }
+
+    @Test
+    public void eachMappedImageHasItsOwnFile() throws IOException {
+        try (ImageMap first = ImageMap.mapped(10, 10); ImageMap second = ImageMap.mapped(10, 10)) {
+            first.putArgb(3, 4, Canals.pack(1, 2, 3));
+            second.putArgb(3, 4, Canals.pack(4, 5, 6));
+
+            assertFalse(first.mappedFile().equals(second.mappedFile()));
+            assertEquals(Canals.pack(1, 2, 3), first.getArgb(3, 4));
+        }
+    }
+}
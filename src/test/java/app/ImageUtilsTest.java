@@ -0,0 +1,73 @@
+package app;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+import nu.pattern.OpenCV;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ImageUtilsTest {
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    @Test
+    public void directConversionMatchesBmpRoundTrip() {
+        int[] types = {CvType.CV_8UC1, CvType.CV_8UC3, CvType.CV_8UC4, CvType.CV_32FC1, CvType.CV_32FC4};
+        Core.setRNGSeed(1);
+        for (int type : types) {
+            Mat mat = new Mat(29, 43, type);
+            // wartości float spoza zakresu 0..255 są nasycane
+            Core.randu(mat, CvType.depth(type) == CvType.CV_8U ? 0 : -60, CvType.depth(type) == CvType.CV_8U ? 256 : 320);
+            MatOfByte bmp = new MatOfByte();
+            Imgcodecs.imencode(".bmp", mat, bmp);
+            Image expected = new Image(new ByteArrayInputStream(bmp.toArray()));
+
+            assertSamePixels(CvType.typeToString(type), expected, ImageUtils.mat2Image(mat));
+        }
+    }
+
+    @Test
+    public void imageToMatReadsBgraPixels() {
+        Mat mat = new Mat(17, 53, CvType.CV_8UC3);
+        Core.setRNGSeed(2);
+        Core.randu(mat, 0, 256);
+        Image image = ImageUtils.mat2Image(mat);
+        Mat expected = new Mat();
+        Imgproc.cvtColor(mat, expected, Imgproc.COLOR_BGR2BGRA);
+
+        Mat actual = ImageUtils.imageToMat(image);
+        assertEquals(CvType.CV_8UC4, actual.type());
+        byte[] expectedBytes = new byte[(int) expected.total() * 4];
+        byte[] actualBytes = new byte[(int) actual.total() * 4];
+        expected.get(0, 0, expectedBytes);
+        actual.get(0, 0, actualBytes);
+        assertArrayEquals(expectedBytes, actualBytes);
+        MatPool.release(actual);
+    }
+
+    static void assertSamePixels(String message, Image expected, Image actual) {
+        assertEquals(message + ": width", expected.getWidth(), actual.getWidth(), 0);
+        assertEquals(message + ": height", expected.getHeight(), actual.getHeight(), 0);
+        PixelReader expectedPixels = expected.getPixelReader();
+        PixelReader actualPixels = actual.getPixelReader();
+        for (int y = 0; y < (int) expected.getHeight(); y++) {
+            for (int x = 0; x < (int) expected.getWidth(); x++) {
+                assertEquals(message + " at " + x + "," + y, expectedPixels.getArgb(x, y), actualPixels.getArgb(x, y));
+            }
+        }
+    }
+}
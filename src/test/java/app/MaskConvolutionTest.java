@@ -0,0 +1,224 @@
+package app;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.ToIntFunction;
+
+import static app.TestImages.assertSamePixels;
+import static app.TestImages.copy;
+import static app.TestImages.randomImage;
+import static org.junit.Assert.assertEquals;
+
+public class MaskConvolutionTest {
+
+    private static final Mask[] MASKS = {
+            new Mask(0, 1, 0, 1, 0, 1, 0, 1, 0),
+            new Mask(0, 0, 0, 0, 1, 0, 0, -1, 0),
+            new Mask(1, 1, 1, 1, 1, 1, 1, 1, 1),
+            new Mask(1, 2, 1, 2, 4, 2, 1, 2, 1),
+            new Mask(0, -1, 0, -1, 5, -1, 0, -1, 0),
+            new Mask(-1, -1, -1, -1, 8, -1, -1, -1, -1),
+            new Mask(1, -2, 3, 0, 7, -1, 2, 2, -5)
+    };
+
+    private static final int[][] SIZES = {{1, 1}, {1, 5}, {5, 1}, {2, 2}, {3, 3}, {17, 9}, {64, 33}, {70, 3}};
+
+    @Test
+    public void matchesNeighbourhoodReferenceForEveryStrategy() {
+        Random random = new Random(1);
+        for (int[] size : SIZES) {
+            for (Mask mask : MASKS) {
+                for (BorderOperationStrategy strategy : BorderOperationStrategy.values()) {
+                    ImageMap source = randomImage(random, size[0], size[1]);
+                    ImageMap expected = reference(source, mask, strategy);
+                    ImageMap actual = new ImageMap(size[0], size[1]);
+                    new MaskConvolution(mask, strategy).apply(source, actual);
+
+                    assertSamePixels(size[0] + "x" + size[1] + " " + strategy, expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void roundedQuotientMatchesFloatRounding() {
+        for (int divider : new int[]{1, 2, 3, 7, 9, 16, -1, -3, -16, 13, 255, 1000}) {
+            for (int sum = -300000; sum <= 300000; sum++) {
+                assertEquals(sum + " / " + divider, Math.round((float) sum / divider), MaskConvolution.roundedQuotient(sum, divider));
+            }
+        }
+        for (int sum = -5; sum <= 5; sum++) {
+            assertEquals(sum + " / 0", Math.round((float) sum / 0), MaskConvolution.roundedQuotient(sum, 0));
+        }
+    }
+
+    @Test
+    public void matchesBruteForceForLargerKernels() {
+        Random random = new Random(1);
+        for (BorderOperationStrategy strategy : BorderOperationStrategy.values()) {
+            for (int trial = 0; trial < 6; trial++) {
+                int size = trial < 3 ? 5 : 7;
+                int[] weights = new int[size * size];
+                int sum = 0;
+                for (int i = 0; i < weights.length; i++) {
+                    weights[i] = random.nextInt(7) - 2;
+                    sum += weights[i];
+                }
+                int divider = trial % 2 == 0 ? (sum != 0 ? sum : 1) : 3;
+                ImageMap source = randomImage(random, 23, 17);
+                ImageMap actual = new ImageMap(23, 17);
+                new MaskConvolution(weights, size, divider, strategy).apply(source, actual);
+
+                assertSamePixels(size + "x" + size + " " + strategy, bruteForce(source, weights, size, divider, strategy), actual);
+            }
+        }
+    }
+
+    @Test
+    public void keepsFloatRoundingForLargeWeights() {
+        Random random = new Random(2);
+        Mask mask = new Mask(4001, -7000, 3, 9999, 20000, -1, 2, -13000, 7);
+        ImageMap source = randomImage(random, 19, 11);
+        for (BorderOperationStrategy strategy : BorderOperationStrategy.values()) {
+            ImageMap actual = new ImageMap(19, 11);
+            new MaskConvolution(mask, strategy).apply(source, actual);
+
+            assertSamePixels(strategy.toString(), reference(source, mask, strategy), actual);
+        }
+    }
+
+    @Test
+    public void skipsZeroTapsOfSparseKernels() {
+        Random random = new Random(3);
+        int[][] kernels = {
+                {0, 1, 1, 1, 0, 1, 1, 2, 1, 1, 1, 2, 4, 2, 1, 1, 1, 2, 1, 1, 0, 1, 1, 1, 0},
+                {0, 0, 0, 0, 0, 0, 0, -1, 0, 0, 0, -1, 4, -1, 0, 0, 0, -1, 0, 0, 0, 0, 0, 0, 0},
+                {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 3},
+                new int[25]
+        };
+        ImageMap source = randomImage(random, 31, 14);
+        for (int[] weights : kernels) {
+            for (BorderOperationStrategy strategy : BorderOperationStrategy.values()) {
+                ImageMap actual = new ImageMap(31, 14);
+                new MaskConvolution(weights, 5, 4, strategy).apply(source, actual);
+
+                assertSamePixels(strategy.toString(), bruteForce(source, weights, 5, 4, strategy), actual);
+            }
+        }
+    }
+
+    @Test
+    public void specializedKernelSplitsLargeWeightGroups() {
+        Random random = new Random(4);
+        int[] box = new int[19 * 19];
+        Arrays.fill(box, 1);
+        int[] mixed = new int[19 * 19];
+        for (int i = 0; i < mixed.length; i++) {
+            mixed[i] = i % 3 == 0 ? -1 : i % 5 == 0 ? 7 : 1;
+        }
+        // bright pixels: a single 361-tap canal sum exceeds 16 bits
+        ImageMap source = new ImageMap(45, 30);
+        for (int y = 0; y < 30; y++) {
+            for (int x = 0; x < 45; x++) {
+                source.putArgb(x, y, Canals.pack(192 + random.nextInt(64), 192 + random.nextInt(64), 192 + random.nextInt(64)));
+            }
+        }
+        for (int[] weights : new int[][]{box, mixed}) {
+            for (BorderOperationStrategy strategy : BorderOperationStrategy.values()) {
+                ImageMap actual = new ImageMap(45, 30);
+                new MaskConvolution(weights, 19, 361, strategy).apply(source, actual);
+
+                assertSamePixels(strategy.toString(), bruteForce(source, weights, 19, 361, strategy), actual);
+            }
+        }
+    }
+
+    /**
+     * Direct weighted sum over the whole kernel. Missing neighbours take the nearest pixel
+     * under DUPLICATE; under EXISTING_ONLY their weights are subtracted from the divider.
+     */
+    static ImageMap bruteForce(ImageMap source, int[] weights, int size, int divider, BorderOperationStrategy strategy) {
+        int width = source.width();
+        int height = source.height();
+        int radius = size / 2;
+        ImageMap target = new ImageMap(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = 0;
+                int green = 0;
+                int blue = 0;
+                int pixelDivider = divider;
+                boolean missing = false;
+                for (int i = 0; i < weights.length; i++) {
+                    int nx = x + i % size - radius;
+                    int ny = y + i / size - radius;
+                    int argb;
+                    if (nx >= 0 && nx < width && ny >= 0 && ny < height) {
+                        argb = source.getArgb(nx, ny);
+                    } else {
+                        missing = true;
+                        if (strategy != BorderOperationStrategy.DUPLICATE) {
+                            pixelDivider -= weights[i];
+                            continue;
+                        }
+                        argb = source.getArgb(Math.max(0, Math.min(width - 1, nx)), Math.max(0, Math.min(height - 1, ny)));
+                    }
+                    red += Canals.red(argb) * weights[i];
+                    green += Canals.green(argb) * weights[i];
+                    blue += Canals.blue(argb) * weights[i];
+                }
+                if (strategy == BorderOperationStrategy.NO_CHANGE && missing) {
+                    target.putArgb(x, y, source.getArgb(x, y));
+                } else {
+                    int d = strategy == BorderOperationStrategy.EXISTING_ONLY ? pixelDivider : divider;
+                    target.putArgb(x, y, Canals.pack(Math.round((float) red / d), Math.round((float) green / d), Math.round((float) blue / d)));
+                }
+            }
+        }
+        return target;
+    }
+
+    /**
+     * The Lab 3 implementation that the engine replaced: one Neighbourhood3x3 per pixel.
+     */
+    @SuppressWarnings("deprecation")
+    private static ImageMap reference(ImageMap source, Mask mask, BorderOperationStrategy strategy) {
+        ImageMap target = new ImageMap(source.width(), source.height());
+        // the operation keeps the middle pixel, so every window sees the unfiltered neighbours
+        copy(source).neighbourhoodOperation((x, y, neighbourhood) -> {
+            target.put(x, y, filter(neighbourhood, mask, strategy));
+            return neighbourhood.middle();
+        });
+        return target;
+    }
+
+    private static Canals filter(Neighbourhood3x3 neighbourhood, Mask mask, BorderOperationStrategy strategy) {
+        if (strategy == BorderOperationStrategy.NO_CHANGE && neighbourhood.anyMissing()) {
+            return neighbourhood.middle();
+        }
+        Neighbourhood3x3 window = strategy == BorderOperationStrategy.DUPLICATE
+                ? neighbourhood.adjustBorderValues()
+                : neighbourhood;
+        return new Canals(
+                canal(window, mask, strategy, canals -> canals.red),
+                canal(window, mask, strategy, canals -> canals.green),
+                canal(window, mask, strategy, canals -> canals.blue));
+    }
+
+    private static int canal(Neighbourhood3x3 neighbourhood, Mask mask, BorderOperationStrategy strategy, ToIntFunction<Canals> canal) {
+        Neighbourhood3x3 n = strategy != BorderOperationStrategy.EXISTING_ONLY ? neighbourhood : neighbourhood.emptyToZero();
+        int sum = canal.applyAsInt(n.i0) * mask.i0
+                + canal.applyAsInt(n.i1) * mask.i1
+                + canal.applyAsInt(n.i2) * mask.i2
+                + canal.applyAsInt(n.i3) * mask.i3
+                + canal.applyAsInt(n.i4) * mask.i4
+                + canal.applyAsInt(n.i5) * mask.i5
+                + canal.applyAsInt(n.i6) * mask.i6
+                + canal.applyAsInt(n.i7) * mask.i7
+                + canal.applyAsInt(n.i8) * mask.i8;
+        int divider = strategy != BorderOperationStrategy.EXISTING_ONLY ? mask.sum() : mask.sumForNonNull(neighbourhood);
+        return Math.round((float) sum / divider);
+    }
+}
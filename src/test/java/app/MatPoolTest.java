@@ -0,0 +1,79 @@
+package app;
+
+import nu.pattern.OpenCV;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MatPoolTest {
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    @Before
+    public void clearPool() {
+        MatPool.clear();
+    }
+
+    @Test
+    public void reusesReleasedMatOfSameSizeAndType() {
+        Mat mat = MatPool.acquire(20, 30, CvType.CV_8UC4);
+        MatPool.release(mat);
+
+        assertNotSame(mat, MatPool.acquire(20, 30, CvType.CV_32FC4));
+        assertNotSame(mat, MatPool.acquire(30, 20, CvType.CV_8UC4));
+        assertSame(mat, MatPool.acquire(20, 30, CvType.CV_8UC4));
+        assertNotSame(mat, MatPool.acquire(20, 30, CvType.CV_8UC4));
+    }
+
+    @Test
+    public void keepsEachMatOnce() {
+        Mat mat = MatPool.acquire(8, 8, CvType.CV_8UC1);
+        MatPool.release(mat);
+        MatPool.release(mat);
+
+        assertSame(mat, MatPool.acquire(8, 8, CvType.CV_8UC1));
+        assertNotSame(mat, MatPool.acquire(8, 8, CvType.CV_8UC1));
+    }
+
+    @Test
+    public void releasesSubmatricesAndMatsAboveTheLimit() {
+        Mat parent = new Mat(10, 10, CvType.CV_8UC1);
+        Mat submat = parent.submat(new Rect(0, 0, 5, 5));
+        MatPool.release(submat);
+        assertNotSame(submat, MatPool.acquire(5, 5, CvType.CV_8UC1));
+        assertFalse(parent.empty());
+
+        Mat[] mats = new Mat[5];
+        for (int i = 0; i < mats.length; i++) {
+            mats[i] = new Mat(4, 4, CvType.CV_8UC1);
+        }
+        for (Mat mat : mats) {
+            MatPool.release(mat);
+        }
+        assertTrue(mats[4].empty());
+        for (int i = 3; i >= 0; i--) {
+            assertSame(mats[i], MatPool.acquire(4, 4, CvType.CV_8UC1));
+        }
+    }
+
+    @Test
+    public void reusesReleasedBuffers() {
+        byte[] buffer = MatPool.acquireBuffer(64);
+        MatPool.releaseBuffer(buffer);
+
+        assertNotSame(buffer, MatPool.acquireBuffer(65));
+        assertSame(buffer, MatPool.acquireBuffer(64));
+        assertNotSame(buffer, MatPool.acquireBuffer(64));
+    }
+}
@@ -0,0 +1,100 @@
+package app;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+import static app.TestImages.assertSamePixels;
+import static app.TestImages.copy;
+import static app.TestImages.randomImage;
+
+public class PointOperationTest {
+
+    @Test
+    public void compiledTablesMatchPerPixelFormulas() {
+        Random random = new Random(1);
+        int[] p = {40, 90, 160, 220};
+        int[] q = {0, 70, 130, 200, 255};
+        IntUnaryOperator[] formulas = {
+                color -> 255 - color,
+                color -> color > 100 ? 230 : 20,
+                color -> color > 60 && color < 190 ? color : 5,
+                color -> {
+                    for (int i = 0; i < p.length; i++) {
+                        if (color < p[i]) {
+                            return q[i];
+                        }
+                    }
+                    return q[q.length - 1];
+                },
+                color -> Math.round(color <= 180 && color >= 30 ? (10 + (float) color / 180 * ((float) 240 - 10)) : color)
+        };
+        PointOperation[] operations = {
+                PointOperation.negate(),
+                PointOperation.threshold(100, 20, 230),
+                PointOperation.thresholdWithPreservation(60, 190, 5),
+                PointOperation.levelReduction(p, q),
+                PointOperation.spreadRange(30, 180, 10, 240)
+        };
+        ImageMap source = randomImage(random, 67, 41);
+        for (int i = 0; i < operations.length; i++) {
+            IntUnaryOperator formula = formulas[i];
+            ImageMap expected = copy(source);
+            expected.pointOperation((x, y, argb) ->
+                    Canals.pack(formula.applyAsInt(Canals.red(argb)), formula.applyAsInt(Canals.green(argb)), formula.applyAsInt(Canals.blue(argb))));
+            ImageMap actual = copy(source);
+            actual.pointOperation(operations[i]);
+
+            assertSamePixels("operation " + i, expected, actual);
+        }
+    }
+
+    @Test
+    public void stretchTablesMatchPerPixelFormula() {
+        Random random = new Random(2);
+        ImageMap source = new ImageMap(50, 30);
+        for (int y = 0; y < 30; y++) {
+            for (int x = 0; x < 50; x++) {
+                source.putArgb(x, y, Canals.pack(20 + random.nextInt(100), 3 + random.nextInt(50), random.nextInt(256)));
+            }
+        }
+        Canals max = source.maxColorCanalValues();
+        Canals min = source.minColorValues();
+        ImageMap expected = copy(source);
+        expected.pointOperation((x, y, argb) -> Canals.pack(
+                (Canals.red(argb) - min.red) * (255 / max.red - min.red),
+                (Canals.green(argb) - min.green) * (255 / max.green - min.green),
+                (Canals.blue(argb) - min.blue) * (255 / max.blue - min.blue)));
+        ImageMap actual = copy(source);
+        actual.pointOperation(PointOperation.stretch(max, min));
+
+        assertSamePixels("stretch", expected, actual);
+    }
+
+    @Test
+    public void pipelineMatchesSequentialPasses() {
+        Random random = new Random(3);
+        int[] p = {60, 120, 200};
+        int[] q = {10, 90, 170, 250};
+        ImageMap source = randomImage(random, 71, 38);
+
+        ImageMap expected = copy(source);
+        expected.pointOperation(PointOperation.thresholdWithPreservation(30, 220, 40));
+        expected.pointOperation(PointOperation.stretch(expected.maxColorCanalValues(), expected.minColorValues()));
+        expected.pointOperation(PointOperation.negate());
+        expected.pointOperation(PointOperation.levelReduction(p, q));
+        expected.pointOperation(PointOperation.stretch(expected.maxColorCanalValues(), expected.minColorValues()));
+
+        ImageMap actual = copy(source);
+        new PointOperationPipeline()
+                .then(PointOperation.thresholdWithPreservation(30, 220, 40))
+                .thenWithHistogram(PointOperation::stretch)
+                .then(PointOperation.negate())
+                .then(PointOperation.levelReduction(p, q))
+                .thenWithHistogram(PointOperation::stretch)
+                .applyTo(actual);
+
+        assertSamePixels("pipeline", expected, actual);
+    }
+}
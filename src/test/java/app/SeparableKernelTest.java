@@ -0,0 +1,81 @@
+package app;
+
+import nu.pattern.OpenCV;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.imgproc.Imgproc;
+
+import static app.TestMats.assertClose;
+import static app.TestMats.randomImage;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.opencv.core.CvType.CV_32F;
+
+public class SeparableKernelTest {
+
+    private static final int[] BORDER_TYPES = {Core.BORDER_DEFAULT, Core.BORDER_REPLICATE, Core.BORDER_CONSTANT};
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    @Test
+    public void detectsRankOneMasks() {
+        IMask[] separable = {LinearFilters.SMOOTH_2, LinearFilters.PREWITT_X, LinearFilters.PREWITT_Y, binomial5x5(),
+                new Mask3x3("SCALED", false, 0.5, 1, 0.5, -1, -2, -1, 0.5, 1, 0.5)};
+        for (IMask mask : separable) {
+            SeparableKernel kernel = mask.getSeparableKernel();
+            assertNotNull(mask.toString(), kernel);
+            assertFactorsMultiplyToMask(mask, kernel);
+        }
+
+        IMask[] notSeparable = {LinearFilters.SMOOTH_1, LinearFilters.SHARPEN_1, LinearFilters.EDGE_DETECTION_3,
+                new Mask5x5("CROSS", 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 1, 1, 1, 1, 1, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0)};
+        for (IMask mask : notSeparable) {
+            assertNull(mask.toString(), mask.getSeparableKernel());
+        }
+    }
+
+    @Test
+    public void separablePassMatchesFilter2D() {
+        Mat image = randomImage(70, 90);
+        for (IMask mask : new IMask[]{LinearFilters.SMOOTH_2, LinearFilters.PREWITT_X, LinearFilters.PREWITT_Y, binomial5x5()}) {
+            for (int borderType : BORDER_TYPES) {
+                Mat expected = new Mat();
+                Imgproc.filter2D(image, expected, CV_32F, mask.getMat(), new Point(-1, -1), 0, borderType);
+                Mat actual = FilteringUtils.acquireResult(image);
+                FilteringUtils.applyMask(image, actual, mask, borderType, null);
+
+                assertClose("border " + borderType, expected, actual);
+            }
+        }
+    }
+
+    /**
+     * Iloczyn filtru kolumn i filtru wierszy musi być równy masce podzielonej przez jej dzielnik.
+     */
+    private static void assertFactorsMultiplyToMask(IMask mask, SeparableKernel kernel) {
+        Mat mat = mask.getMat();
+        int size = mask.getSize();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                double product = kernel.getKernelY().get(row, 0)[0] * kernel.getKernelX().get(0, col)[0];
+                assertEquals(row + "," + col, mat.get(row, col)[0], product, 1e-6);
+            }
+        }
+    }
+
+    private static Mask5x5 binomial5x5() {
+        int[] binomial = {1, 4, 6, 4, 1};
+        double[] values = new double[25];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = binomial[i / 5] * binomial[i % 5];
+        }
+        return new Mask5x5("BINOMIAL", values);
+    }
+}
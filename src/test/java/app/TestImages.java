@@ -0,0 +1,42 @@
+package app;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Shared helpers for tests working on {@link ImageMap}.
+ */
+final class TestImages {
+
+    private TestImages() {
+    }
+
+    static ImageMap randomImage(Random random, int width, int height) {
+        ImageMap image = new ImageMap(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.putArgb(x, y, Canals.pack(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            }
+        }
+        return image;
+    }
+
+    static ImageMap copy(ImageMap source) {
+        ImageMap copy = new ImageMap(source.width(), source.height());
+        for (int y = 0; y < source.height(); y++) {
+            for (int x = 0; x < source.width(); x++) {
+                copy.putArgb(x, y, source.getArgb(x, y));
+            }
+        }
+        return copy;
+    }
+
+    static void assertSamePixels(String message, ImageMap expected, ImageMap actual) {
+        for (int y = 0; y < expected.height(); y++) {
+            for (int x = 0; x < expected.width(); x++) {
+                assertEquals(message + " at " + x + "," + y, expected.getArgb(x, y), actual.getArgb(x, y));
+            }
+        }
+    }
+}
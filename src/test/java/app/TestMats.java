@@ -0,0 +1,44 @@
+package app;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pomocnicze metody testów operujących na obiektach Mat.
+ */
+final class TestMats {
+
+    /**
+     * Największy dopuszczalny błąd względny - zaokrąglenia obliczeń na liczbach float.
+     */
+    private static final double TOLERANCE = 1e-5;
+
+    private TestMats() {
+    }
+
+    /**
+     * @return obraz CV_8UC4 z losowymi wartościami (ziarno generatora OpenCV ustawiane jest na 1)
+     */
+    static Mat randomImage(int rows, int cols) {
+        Mat image = new Mat(rows, cols, CvType.CV_8UC4);
+        Core.setRNGSeed(1);
+        Core.randu(image, 0, 256);
+        return image;
+    }
+
+    /**
+     * Sprawdza, czy obrazy różnią się najwyżej o błąd zaokrągleń, względem największej wartości obrazu oczekiwanego.
+     */
+    static void assertClose(String message, Mat expected, Mat actual) {
+        Mat difference = new Mat();
+        Core.absdiff(expected, actual, difference);
+        double maxDifference = Core.minMaxLoc(difference.reshape(1)).maxVal;
+        Core.MinMaxLocResult range = Core.minMaxLoc(expected.reshape(1));
+        double scale = Math.max(1, Math.max(Math.abs(range.minVal), Math.abs(range.maxVal)));
+        assertTrue(message + ": max difference " + maxDifference, maxDifference / scale <= TOLERANCE);
+        difference.release();
+    }
+}
@@ -0,0 +1,183 @@
+package app;
+
+import nu.pattern.OpenCV;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ThinningEngineTest {
+
+    private static final double OBJECT = 0;
+    private static final double BACKGROUND = 255;
+
+    /**
+     * Wartość wzorca oznaczająca dowolny piksel (jak w {@link BlackObjectPatterns}).
+     */
+    private static final double ANY = 150;
+
+    /**
+     * Szerokości wokół granic słów obrazu spakowanego (64 piksele).
+     */
+    private static final int[] WIDTHS = {3, 63, 64, 65, 127, 128, 129};
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    @Test
+    public void everyStepMatchesOriginalAlgorithm() {
+        for (int i = 0; i < WIDTHS.length; i++) {
+            Mat image = randomBlobs(WIDTHS[i], 40 + i * 3, i);
+            assertSameSteps("width " + WIDTHS[i], original(image.clone()), engineSteps(image.clone()));
+        }
+        for (double value : new double[]{OBJECT, BACKGROUND}) {
+            Mat image = new Mat(30, 70, CvType.CV_8UC1, new Scalar(value));
+            assertSameSteps("uniform " + value, original(image.clone()), engineSteps(image.clone()));
+        }
+    }
+
+    @Test
+    public void frontierIterationsMatchOriginalAlgorithm() {
+        // grube obiekty: większość iteracji bada tylko front
+        Mat image = randomBlobs(90, 70, 7, 31);
+        List<byte[]> expected = original(image.clone());
+        assertSameSteps("thick objects", expected, engineSteps(image.clone()));
+        assertTrue("steps " + expected.size(), expected.size() > 5);
+    }
+
+    @Test
+    public void parallelBandsMatchSequentialRun() {
+        // obraz i front pierwszych iteracji są większe niż TiledExecutor.TILE_PIXELS, więc dzielone są na pasy
+        Mat image = randomBlobs(1000, 700, 11);
+        List<byte[]> sequential = engineSteps(new ThinningEngine(image, BlackObjectPatterns.getPATTERNS(), OBJECT, BACKGROUND)
+                .withExecutor(TiledExecutor.of(1)), image.clone());
+        List<byte[]> parallel = engineSteps(new ThinningEngine(image, BlackObjectPatterns.getPATTERNS(), OBJECT, BACKGROUND)
+                .withExecutor(TiledExecutor.of(4)), image.clone());
+
+        assertSameSteps("parallel", sequential, parallel);
+    }
+
+    @Test
+    public void removedPixelsReproduceEveryStep() {
+        // tak jak ThinningHistory: obraz początkowy i piksele usunięte w kolejnych krokach
+        Mat image = randomBlobs(130, 90, 5, 15);
+        ThinningEngine engine = new ThinningEngine(image, BlackObjectPatterns.getPATTERNS(), OBJECT, BACKGROUND);
+        BinaryImage values = engine.snapshot();
+        int step = 0;
+        boolean remain = true;
+        while (remain) {
+            remain = engine.iterate();
+            for (int i : engine.changedPixels()) {
+                assertTrue("step " + step + " pixel " + i, values.get(i / image.cols(), i % image.cols()));
+                values.set(i / image.cols(), i % image.cols(), false);
+            }
+            assertEquals("step " + step, engine.snapshot(), values);
+            step++;
+        }
+    }
+
+    static Mat randomBlobs(int cols, int rows, int seed) {
+        return randomBlobs(cols, rows, seed, 9);
+    }
+
+    static Mat randomBlobs(int cols, int rows, int seed, int blur) {
+        Mat image = new Mat(rows, cols, CvType.CV_8UC1);
+        Core.setRNGSeed(seed);
+        Core.randu(image, 0, 256);
+        Imgproc.GaussianBlur(image, image, new Size(blur, blur), 0);
+        Imgproc.threshold(image, image, 128, 255, Imgproc.THRESH_BINARY);
+        return image;
+    }
+
+    /**
+     * Kolejne obrazy silnika ścieniania, aż do iteracji, w której nic nie usunięto (włącznie).
+     */
+    static List<byte[]> engineSteps(ThinningEngine engine, Mat image) {
+        List<byte[]> steps = new ArrayList<>();
+        boolean remain = true;
+        while (remain) {
+            remain = engine.iterate();
+            engine.snapshot().toMat(image, OBJECT, BACKGROUND);
+            steps.add(pixels(image));
+        }
+        return steps;
+    }
+
+    private static List<byte[]> engineSteps(Mat image) {
+        return engineSteps(new ThinningEngine(image, BlackObjectPatterns.getPATTERNS(), OBJECT, BACKGROUND), image);
+    }
+
+    static void assertSameSteps(String message, List<byte[]> expected, List<byte[]> actual) {
+        assertEquals(message + ": steps", expected.size(), actual.size());
+        for (int step = 0; step < expected.size(); step++) {
+            assertArrayEquals(message + ": step " + step, expected.get(step), actual.get(step));
+        }
+    }
+
+    static byte[] pixels(Mat image) {
+        byte[] values = new byte[(int) image.total()];
+        image.get(0, 0, values);
+        return values;
+    }
+
+    /**
+     * Pierwotny algorytm okna {@link ThinningWindow}: każdy piksel obiektu sąsiadujący przez
+     * sąsiada 1, 3, 5 lub 7 z tłem jest porównywany ze wszystkimi wzorcami na obrazie sprzed iteracji.
+     */
+    private static List<byte[]> original(Mat image) {
+        List<byte[]> steps = new ArrayList<>();
+        Mat copy = image.clone();
+        boolean remain = true;
+        while (remain) {
+            remain = false;
+            for (int j = 1; j < 8; j += 2) {
+                for (int col = 1; col < image.cols() - 1; col++) {
+                    for (int row = 1; row < image.rows() - 1; row++) {
+                        if (image.get(row, col)[0] == OBJECT && neighbour(image, j, row, col) == BACKGROUND) {
+                            if (matchesAnyPattern(image, row, col)) {
+                                copy.put(row, col, BACKGROUND);
+                                remain = true;
+                            } else {
+                                copy.put(row, col, OBJECT);
+                            }
+                        }
+                    }
+                }
+            }
+            FilteringUtils.handleBorder(copy, new Scalar(BACKGROUND, BACKGROUND, BACKGROUND, BACKGROUND));
+            copy.copyTo(image);
+            steps.add(pixels(image));
+        }
+        return steps;
+    }
+
+    private static boolean matchesAnyPattern(Mat image, int row, int col) {
+        for (double[] pattern : BlackObjectPatterns.getPATTERNS()) {
+            boolean matches = true;
+            for (int i = 0; i < 9 && matches; i++) {
+                matches = pattern[i] == ANY || pattern[i] == neighbour(image, i, row, col);
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double neighbour(Mat image, int index, int row, int col) {
+        return image.get(row - 1 + index / 3, col - 1 + index % 3)[0];
+    }
+}
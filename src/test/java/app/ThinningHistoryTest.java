@@ -0,0 +1,44 @@
+package app;
+
+import nu.pattern.OpenCV;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static app.ImageUtilsTest.assertSamePixels;
+import static app.ThinningEngineTest.randomBlobs;
+import static org.junit.Assert.assertEquals;
+
+public class ThinningHistoryTest {
+
+    private static final double OBJECT = 0;
+    private static final double BACKGROUND = 255;
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    @Test
+    public void rebuildsEveryStepFromBaseImage() {
+        Mat image = randomBlobs(150, 60, 3, 15);
+        ThinningEngine engine = new ThinningEngine(image, BlackObjectPatterns.getPATTERNS(), OBJECT, BACKGROUND);
+        ThinningHistory history = new ThinningHistory(engine.snapshot(), OBJECT, BACKGROUND);
+        List<BinaryImage> steps = new ArrayList<>();
+        boolean remain = true;
+        while (remain) {
+            remain = engine.iterate();
+            history.add(engine.changedPixels());
+            steps.add(engine.snapshot());
+        }
+
+        assertEquals(steps.size(), history.size());
+        for (int step = 0; step < steps.size(); step++) {
+            assertSamePixels("step " + step, steps.get(step).toImage(OBJECT, BACKGROUND), history.get(step));
+            assertEquals("step " + step, steps.get(step).count(), history.objectPixels(step));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package app;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static app.TestImages.assertSamePixels;
+import static app.TestImages.copy;
+import static app.TestImages.randomImage;
+import static org.junit.Assert.assertEquals;
+
+public class TiledExecutorTest {
+
+    private static final Mask MASK = new Mask(1, -2, 3, 0, 7, -1, 2, 2, -5);
+
+    @Test
+    public void bandsCoverEveryRowOnce() {
+        for (int parallelism : new int[]{1, 2, 4}) {
+            for (int[] size : new int[][]{{1, 1}, {5, 0}, {1000, 1}, {300, 700}, {65536, 3}, {1023, 257}}) {
+                AtomicIntegerArray visits = new AtomicIntegerArray(size[1]);
+                TiledExecutor.of(parallelism).forEachBand(size[0], size[1], (rowFrom, rowTo) -> {
+                    for (int row = rowFrom; row < rowTo; row++) {
+                        visits.incrementAndGet(row);
+                    }
+                });
+                for (int row = 0; row < size[1]; row++) {
+                    assertEquals(size[0] + "x" + size[1] + " x" + parallelism + " row " + row, 1, visits.get(row));
+                }
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void parallelPassesMatchSequentialPasses() {
+        // above TiledExecutor.TILE_PIXELS, so the parallel passes run in several bands
+        ImageMap source = randomImage(new Random(1), 410, 390);
+        ImageMap[] results = new ImageMap[2];
+        int[] parallelism = {1, 4};
+        for (int i = 0; i < 2; i++) {
+            TiledExecutor executor = TiledExecutor.of(parallelism[i]);
+            ImageMap image = copy(source).withExecutor(executor);
+            image.pointOperation((x, y, argb) -> Canals.pack(Canals.red(argb) ^ x, Canals.green(argb) + y, Canals.blue(argb)));
+            image.pointOperation(PointOperation.spreadRange(20, 200, 0, 255));
+            image.neighbourhoodOperation((x, y, neighbourhood) -> neighbourhood.anyMissing() ? neighbourhood.middle() : neighbourhood.i1);
+            results[i] = new ImageMap(source.width(), source.height());
+            new MaskConvolution(MASK, BorderOperationStrategy.EXISTING_ONLY).apply(image, results[i]);
+        }
+
+        assertSamePixels("parallel", results[0], results[1]);
+    }
+}